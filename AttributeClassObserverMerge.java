@@ -0,0 +1,68 @@
+/*
+ * AttributeClassObserverMerge.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.core.attributeclassobservers;
+
+import moa.core.DoubleVector;
+import moa.core.GaussianEstimator;
+
+//Merges attribute class observers built on disjoint parts of a stream. Supports the Gaussian numeric
+//and nominal observers used by NaiveBayes
+public class AttributeClassObserverMerge {
+
+	public static boolean canMerge(AttributeClassObserver obs){
+		return obs.getClass() == GaussianNumericAttributeClassObserver.class
+				|| obs.getClass() == NominalAttributeClassObserver.class;
+	}
+
+	//Adds partial's statistics into target; both must be the same mergeable type
+	public static void merge(AttributeClassObserver target, AttributeClassObserver partial){
+		if(target instanceof GaussianNumericAttributeClassObserver)
+			mergeGaussian((GaussianNumericAttributeClassObserver) target, (GaussianNumericAttributeClassObserver) partial);
+		else
+			mergeNominal((NominalAttributeClassObserver) target, (NominalAttributeClassObserver) partial);
+	}
+
+	private static void mergeGaussian(GaussianNumericAttributeClassObserver t, GaussianNumericAttributeClassObserver p){
+		for(int c = 0; c < p.attValDistPerClass.size(); c++){
+			GaussianEstimator est = p.attValDistPerClass.get(c);
+			if(est == null) continue;
+			if(t.attValDistPerClass.get(c) == null){
+				t.attValDistPerClass.set(c, est);
+				t.minValueObservedPerClass.setValue(c, p.minValueObservedPerClass.getValue(c));
+				t.maxValueObservedPerClass.setValue(c, p.maxValueObservedPerClass.getValue(c));
+			} else {
+				t.attValDistPerClass.get(c).addObservations(est);
+				t.minValueObservedPerClass.setValue(c, Math.min(t.minValueObservedPerClass.getValue(c), p.minValueObservedPerClass.getValue(c)));
+				t.maxValueObservedPerClass.setValue(c, Math.max(t.maxValueObservedPerClass.getValue(c), p.maxValueObservedPerClass.getValue(c)));
+			}
+		}
+	}
+
+	private static void mergeNominal(NominalAttributeClassObserver t, NominalAttributeClassObserver p){
+		t.totalWeightObserved += p.totalWeightObserved;
+		t.missingWeightObserved += p.missingWeightObserved;
+		for(int c = 0; c < p.attValDistPerClass.size(); c++){
+			DoubleVector dist = p.attValDistPerClass.get(c);
+			if(dist == null) continue;
+			if(t.attValDistPerClass.get(c) == null) t.attValDistPerClass.set(c, dist);
+			else t.attValDistPerClass.get(c).addValues(dist);
+		}
+	}
+}
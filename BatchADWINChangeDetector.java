@@ -0,0 +1,254 @@
+/*
+ * BatchADWINChangeDetector.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.core.driftdetection;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.github.javacliparser.FloatOption;
+
+import moa.core.ObjectRepository;
+import moa.core.StringUtils;
+import moa.tasks.TaskMonitor;
+
+/*
+ * ADWIN (Bifet and Gavalda 2007) change detector with a batch path, computing exactly what MOA's ADWIN
+ * and ADWINChangeDetector compute. The exponential histogram is kept in primitive arrays rather than
+ * MOA's linked list of bucket row objects, the window variances ADWIN tracks per split but never
+ * uses in its cut test are not computed, and the estimate is only read around the clock ticks where
+ * a cut is checked, since no other instance can signal change.
+ *
+ * A change is signalled when ADWIN cuts its window and the error estimate has risen; ADWIN has no
+ * warning zone. Unlike MOA's ADWINChangeDetector, whose change flag stays set once raised,
+ * getChange() reports whether the last instance consumed signalled change.
+ */
+public class BatchADWINChangeDetector extends AbstractChangeDetector implements BatchChangeDetector {
+
+	private static final long serialVersionUID = 1L;
+
+	static final int MAX_BUCKETS = 5; //buckets a row holds before its two oldest are merged into the next row
+	static final int ROW = MAX_BUCKETS + 1; //array slots per row
+	static final int CLOCK = 32; //instances between cut checks
+	static final int MIN_WINDOW = 10; //window length before cuts are checked
+	static final int MIN_SUBWINDOW = 5;
+
+	public FloatOption deltaAdwinOption = new FloatOption("deltaAdwin", 'a',
+            "Delta of Adwin change detection", 0.002, 0.0, 1.0);
+
+	//row r holds buckets of 2^r instances at [r * ROW, r * ROW + rowSizes[r]), oldest first
+	private double[] bucketTotals;
+	private double[] bucketVariances;
+	private int[] rowSizes;
+	private int lastRow; //oldest row in use
+
+	private int width;
+	private double total;
+	private double variance; //sum of squared deviations over the window
+	private int time;
+	private double delta;
+
+	@Override
+	public void resetLearning(){
+		bucketTotals = new double[4 * ROW];
+		bucketVariances = new double[4 * ROW];
+		rowSizes = new int[4];
+		lastRow = 0;
+		width = 0;
+		total = 0;
+		variance = 0;
+		time = 0;
+		delta = deltaAdwinOption.getValue();
+		super.resetLearning();
+	}
+
+	@Override
+	public void input(double inputValue){
+		if (this.rowSizes == null) {
+			resetLearning();
+		}
+		update(inputValue);
+		finishInput();
+	}
+
+	@Override
+	public int inputBatch(double[] errors, int from, int to){
+		if (this.rowSizes == null) {
+			resetLearning();
+		}
+		for(int i = from; i < to; i++){
+			if(update(errors[i])){
+				finishInput();
+				return i;
+			}
+		}
+		if(to > from) finishInput();
+		return -1;
+	}
+
+	@Override
+	public int inputBatch(BitSet errors, int from, int to){
+		if (this.rowSizes == null) {
+			resetLearning();
+		}
+		for(int i = from; i < to; i++){
+			if(update(errors.get(i) ? 1.0 : 0.0)){
+				finishInput();
+				return i;
+			}
+		}
+		if(to > from) finishInput();
+		return -1;
+	}
+
+	public int getWidth(){
+		return width;
+	}
+
+	//As ADWIN.setInput followed by ADWINChangeDetector's check that the estimate rose
+	private boolean update(double value){
+		time++;
+		boolean check = time % CLOCK == 0;
+		double estimation = check ? total / width : 0;
+		insertElement(value);
+		this.isChangeDetected = check && width > MIN_WINDOW && reduceWindow() && total / width > estimation;
+		return this.isChangeDetected;
+	}
+
+	private void finishInput(){
+		this.isWarningZone = false;
+		this.delay = 0.0;
+		this.estimation = total / width;
+	}
+
+	private void insertElement(double value){
+		width++;
+		bucketTotals[rowSizes[0]] = value;
+		bucketVariances[rowSizes[0]] = 0;
+		rowSizes[0]++;
+		double incVariance = 0;
+		if (width > 1) {
+			incVariance = (width - 1) * (value - total / (width - 1)) * (value - total / (width - 1)) / width;
+		}
+		variance += incVariance;
+		total += value;
+		compressBuckets();
+	}
+
+	//Merges the two oldest buckets of each full row into one bucket of the next row
+	private void compressBuckets(){
+		for(int row = 0; rowSizes[row] == ROW; row++){
+			if(row == lastRow) addRow();
+			int n = 1 << row;
+			int b = row * ROW;
+			double u1 = bucketTotals[b] / n;
+			double u2 = bucketTotals[b + 1] / n;
+			double incVariance = n * n * (u1 - u2) * (u1 - u2) / (n + n);
+			int next = (row + 1) * ROW + rowSizes[row + 1];
+			bucketTotals[next] = bucketTotals[b] + bucketTotals[b + 1];
+			bucketVariances[next] = bucketVariances[b] + bucketVariances[b + 1] + incVariance;
+			rowSizes[row + 1]++;
+			removeOldest(row, 2);
+		}
+	}
+
+	private void addRow(){
+		lastRow++;
+		if(lastRow == rowSizes.length){
+			rowSizes = Arrays.copyOf(rowSizes, 2 * rowSizes.length);
+			bucketTotals = Arrays.copyOf(bucketTotals, rowSizes.length * ROW);
+			bucketVariances = Arrays.copyOf(bucketVariances, rowSizes.length * ROW);
+		}
+	}
+
+	private void removeOldest(int row, int count){
+		int b = row * ROW;
+		System.arraycopy(bucketTotals, b + count, bucketTotals, b, rowSizes[row] - count);
+		System.arraycopy(bucketVariances, b + count, bucketVariances, b, rowSizes[row] - count);
+		rowSizes[row] -= count;
+	}
+
+	//Drops the oldest bucket while some split of the window has means that differ by more than
+	//the cut threshold. Returns true if any bucket was dropped
+	private boolean reduceWindow(){
+		boolean reduced = false;
+		boolean cut = true;
+		while(cut){
+			cut = false;
+			int n0 = 0;
+			int n1 = width;
+			double u0 = 0;
+			double u1 = total;
+			//constant over a scan, as the window only changes when the scan stops
+			double dd = Math.log(2 * Math.log(width) / delta);
+			double v = variance / width;
+			scan:
+			for(int row = lastRow; row >= 0; row--){
+				int n2 = 1 << row;
+				for(int k = 0; k < rowSizes[row]; k++){
+					double u2 = bucketTotals[row * ROW + k];
+					n0 += n2;
+					n1 -= n2;
+					u0 += u2;
+					u1 -= u2;
+					if(row == 0 && k == rowSizes[row] - 1) break scan;
+					double absValue = (double) (u0 / n0) - (u1 / n1);
+					if(n1 > MIN_SUBWINDOW + 1 && n0 > MIN_SUBWINDOW + 1 && isCut(n0, n1, absValue, dd, v)){
+						cut = true;
+						reduced = true;
+						deleteElement();
+						break scan;
+					}
+				}
+			}
+		}
+		return reduced;
+	}
+
+	private static boolean isCut(int n0, int n1, double absValue, double dd, double v){
+		double m = ((double) 1 / ((n0 - MIN_SUBWINDOW + 1))) + ((double) 1 / ((n1 - MIN_SUBWINDOW + 1)));
+		double epsilon = Math.sqrt(2 * m * v * dd) + (double) 2 / 3 * dd * m;
+		return Math.abs(absValue) > epsilon;
+	}
+
+	//Drops the oldest bucket from the window
+	private void deleteElement(){
+		int n1 = 1 << lastRow;
+		int b = lastRow * ROW;
+		width -= n1;
+		total -= bucketTotals[b];
+		double u1 = bucketTotals[b] / n1;
+		double incVariance = bucketVariances[b] + n1 * width * (u1 - total / width) * (u1 - total / width) / (n1 + width);
+		variance -= incVariance;
+		removeOldest(lastRow, 1);
+		if(rowSizes[lastRow] == 0) lastRow--;
+	}
+
+	@Override
+	public void getDescription(StringBuilder sb, int indent) {
+		StringUtils.appendIndented(sb, indent, "ADWIN with batched input, window of "
+				+ width + " with error rate " + this.estimation);
+	}
+
+	@Override
+	protected void prepareForUseImpl(TaskMonitor monitor,
+			ObjectRepository repository) {
+		resetLearning();
+	}
+}
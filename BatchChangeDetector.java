@@ -0,0 +1,37 @@
+/*
+ * BatchChangeDetector.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+
+/*
+ * A change detector that consumes a run of error indicators in one call. Input stops at the first
+ * instance that puts the detector in its warning zone or signals a change, and that offset is returned
+ * so the caller can act on it, then resume from the next offset. getChange() and getWarningZone()
+ * reflect the detector's state after the last instance consumed.
+ */
+public interface BatchChangeDetector extends ChangeDetector {
+
+	//Feeds errors[from..to) (1 for an error, 0 otherwise). Returns the first offset in warning or drift, or -1
+	public int inputBatch(double[] errors, int from, int to);
+
+	//Feeds bits from..to of errors, where a set bit is an error. Returns the first offset in warning or drift, or -1
+	public int inputBatch(BitSet errors, int from, int to);
+}
@@ -0,0 +1,149 @@
+/*
+ * BatchChangeDetectorTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.core.driftdetection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+//Checks BatchDDM and BatchADWINChangeDetector reproduce MOA's DDM and ADWINChangeDetector bit for bit on
+//random error streams, one instance at a time and through both batch paths
+public class BatchChangeDetectorTest {
+
+	static final int STREAM_LENGTH = 200000;
+	static final int STREAMS = 5;
+
+	@Test
+	public void batchDDMMatchesDDM(){
+		for(int s = 0; s < STREAMS; s++){
+			double[] errors = errorStream(new Random(s), false);
+			DDM reference = new DDM();
+			reference.prepareForUse();
+			BatchDDM single = new BatchDDM();
+			single.prepareForUse();
+
+			double[] estimations = new double[errors.length];
+			ArrayList<Integer> stops = new ArrayList<Integer>();
+			for(int i = 0; i < errors.length; i++){
+				reference.input(errors[i]);
+				single.input(errors[i]);
+				assertEquals("change at " + i, reference.getChange(), single.getChange());
+				assertEquals("warning at " + i, reference.getWarningZone(), single.getWarningZone());
+				assertBits(reference.getEstimation(), single.getEstimation(), i);
+				estimations[i] = reference.getEstimation();
+				if(reference.getChange() || reference.getWarningZone()) stops.add(i);
+			}
+			assertTrue("stream " + s + " never changed", stops.size() > 0);
+
+			BatchDDM batch = new BatchDDM();
+			batch.prepareForUse();
+			assertStops(stops, estimations, errors, batch, new Random(100 + s));
+		}
+	}
+
+	@Test
+	public void batchADWINMatchesADWINChangeDetector(){
+		for(int s = 0; s < STREAMS; s++){
+			for(boolean fractional : new boolean[]{false, true}){
+				double[] errors = errorStream(new Random(s), fractional);
+				ADWINChangeDetector reference = new ADWINChangeDetector();
+				reference.prepareForUse();
+				ADWIN window = new ADWIN(reference.deltaAdwinOption.getValue()); //exposes ADWIN's own per-instance signal
+				BatchADWINChangeDetector single = new BatchADWINChangeDetector();
+				single.prepareForUse();
+
+				double[] estimations = new double[errors.length];
+				ArrayList<Integer> stops = new ArrayList<Integer>();
+				for(int i = 0; i < errors.length; i++){
+					double before = window.getEstimation();
+					boolean change = window.setInput(errors[i]) && window.getEstimation() > before;
+					reference.input(errors[i]);
+					single.input(errors[i]);
+					assertEquals("change at " + i, change, single.getChange());
+					assertEquals("width at " + i, window.getWidth(), single.getWidth());
+					assertBits(reference.getEstimation(), single.getEstimation(), i);
+					//MOA's flag stays set once raised, so it can only be checked to have been raised
+					if(change) assertTrue(reference.getChange());
+					assertEquals(false, single.getWarningZone());
+					estimations[i] = reference.getEstimation();
+					if(change) stops.add(i);
+				}
+				assertTrue("stream " + s + " never changed", stops.size() > 0);
+
+				BatchADWINChangeDetector batch = new BatchADWINChangeDetector();
+				batch.prepareForUse();
+				assertStops(stops, estimations, errors, batch, new Random(100 + s));
+			}
+		}
+	}
+
+	//Feeds the stream through both batch paths in random chunks, resuming after each stop, and checks
+	//they stop exactly where the reference signalled warning or change with the reference's estimate
+	private static void assertStops(ArrayList<Integer> stops, double[] estimations, double[] errors,
+			BatchChangeDetector batch, Random random){
+		BatchChangeDetector bits = (BatchChangeDetector) batch.copy();
+		BitSet errorBits = new BitSet(errors.length);
+		boolean binary = true;
+		for(int i = 0; i < errors.length; i++){
+			if(errors[i] == 1.0) errorBits.set(i);
+			else if(errors[i] != 0.0) binary = false;
+		}
+
+		assertEquals(stops, consume(batch, errors, null, estimations, random));
+		if(binary) assertEquals(stops, consume(bits, null, errorBits, estimations, random));
+	}
+
+	private static ArrayList<Integer> consume(BatchChangeDetector detector, double[] errors, BitSet errorBits,
+			double[] estimations, Random random){
+		ArrayList<Integer> stops = new ArrayList<Integer>();
+		int length = errors != null ? errors.length : estimations.length;
+		int from = 0;
+		while(from < length){
+			int to = Math.min(length, from + 1 + random.nextInt(5000));
+			int stop = errors != null ? detector.inputBatch(errors, from, to) : detector.inputBatch(errorBits, from, to);
+			int last = stop >= 0 ? stop : to - 1;
+			assertBits(estimations[last], detector.getEstimation(), last);
+			if(stop >= 0) stops.add(stop);
+			from = last + 1;
+		}
+		return stops;
+	}
+
+	private static void assertBits(double expected, double actual, int i){
+		assertEquals("estimation at " + i, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+
+	//Error rates that shift abruptly and drift gradually; fractional streams carry values in [0,1]
+	private static double[] errorStream(Random random, boolean fractional){
+		double[] errors = new double[STREAM_LENGTH];
+		double rate = 0.1;
+		for(int i = 0; i < errors.length; i++){
+			if(random.nextInt(20000) == 0) rate = 0.02 + 0.5 * random.nextDouble();
+			else rate = Math.min(0.9, Math.max(0.01, rate + (random.nextDouble() - 0.5) * 0.001));
+			errors[i] = fractional ? Math.min(1.0, rate * 2 * random.nextDouble()) : random.nextDouble() < rate ? 1.0 : 0.0;
+		}
+		return errors;
+	}
+}
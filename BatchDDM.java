@@ -0,0 +1,157 @@
+/*
+ * BatchDDM.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+
+import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
+
+import moa.core.ObjectRepository;
+import moa.core.StringUtils;
+import moa.tasks.TaskMonitor;
+
+/*
+ * Drift Detection Method (Gama et al. 2004) with the same statistics and thresholds as MOA's DDM,
+ * plus a batch path that runs the update in a loop over primitive state.
+ */
+public class BatchDDM extends AbstractChangeDetector implements BatchChangeDetector {
+
+	private static final long serialVersionUID = 1L;
+
+	public IntOption minNumInstancesOption = new IntOption(
+            "minNumInstances",
+            'n',
+            "The minimum number of instances before permitting detecting change.",
+            30, 0, Integer.MAX_VALUE);
+
+	public FloatOption warningLevelOption = new FloatOption(
+            "warningLevel", 
+            'w', 
+            "Warning Level.",
+            2.0, 1.0, 4.0);
+
+	public FloatOption outcontrolLevelOption = new FloatOption(
+            "outcontrolLevel", 
+            'o', 
+            "Outcontrol Level.",
+            3.0, 1.0, 5.0);
+
+	private int m_n;
+	private double m_p;
+	private double m_s;
+	private double m_psmin;
+	private double m_pmin;
+	private double m_smin;
+
+	public BatchDDM(){
+		resetLearning();
+	}
+
+	@Override
+	public void resetLearning(){
+		m_n = 1;
+		m_p = 1;
+		m_s = 0;
+		m_psmin = Double.MAX_VALUE;
+		m_pmin = Double.MAX_VALUE;
+		m_smin = Double.MAX_VALUE;
+		super.resetLearning();
+	}
+
+	@Override
+	public void input(double prediction){
+		if (this.isChangeDetected == true || this.isInitialized == false) {
+			resetLearning();
+			this.isInitialized = true;
+		}
+		update(prediction, minNumInstancesOption.getValue(), warningLevelOption.getValue(), outcontrolLevelOption.getValue());
+	}
+
+	@Override
+	public int inputBatch(double[] errors, int from, int to){
+		int minNumInstances = minNumInstancesOption.getValue();
+		double warningLevel = warningLevelOption.getValue();
+		double outcontrolLevel = outcontrolLevelOption.getValue();
+		for(int i = from; i < to; i++){
+			if (this.isChangeDetected == true || this.isInitialized == false) {
+				resetLearning();
+				this.isInitialized = true;
+			}
+			update(errors[i], minNumInstances, warningLevel, outcontrolLevel);
+			if(this.isChangeDetected || this.isWarningZone) return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public int inputBatch(BitSet errors, int from, int to){
+		int minNumInstances = minNumInstancesOption.getValue();
+		double warningLevel = warningLevelOption.getValue();
+		double outcontrolLevel = outcontrolLevelOption.getValue();
+		for(int i = from; i < to; i++){
+			if (this.isChangeDetected == true || this.isInitialized == false) {
+				resetLearning();
+				this.isInitialized = true;
+			}
+			update(errors.get(i) ? 1.0 : 0.0, minNumInstances, warningLevel, outcontrolLevel);
+			if(this.isChangeDetected || this.isWarningZone) return i;
+		}
+		return -1;
+	}
+
+	private void update(double prediction, int minNumInstances, double warningLevel, double outcontrolLevel){
+		m_p = m_p + (prediction - m_p) / (double) m_n;
+		m_s = Math.sqrt(m_p * (1 - m_p) / (double) m_n);
+		m_n++;
+
+		this.estimation = m_p;
+		this.isChangeDetected = false;
+		this.isWarningZone = false;
+		this.delay = 0;
+
+		if (m_n < minNumInstances) {
+			return;
+		}
+
+		if (m_p + m_s <= m_psmin) {
+			m_pmin = m_p;
+			m_smin = m_s;
+			m_psmin = m_p + m_s;
+		}
+
+		if (m_n > minNumInstances && m_p + m_s > m_pmin + outcontrolLevel * m_smin) {
+			this.isChangeDetected = true;
+		} else if (m_p + m_s > m_pmin + warningLevel * m_smin) {
+			this.isWarningZone = true;
+		}
+	}
+
+	@Override
+	public void getDescription(StringBuilder sb, int indent) {
+		StringUtils.appendIndented(sb, indent, "DDM with batched input, " + m_n + " instances seen, error rate " + m_p);
+	}
+
+	@Override
+	protected void prepareForUseImpl(TaskMonitor monitor,
+			ObjectRepository repository) {
+		resetLearning();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * BulkTrainer.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.util.stream.IntStream;
+
+import com.yahoo.labs.samoa.instances.Instances;
+
+import moa.classifiers.Classifier;
+import moa.classifiers.bayes.NaiveBayesMerge;
+
+/*
+ * Trains an untrained model on a buffer. For learners with mergeable sufficient statistics the buffer
+ * is split into contiguous parts, a copy of the model is trained on each part in parallel and the
+ * partial statistics are merged into the model. Other learners, and buffers too small to be worth
+ * splitting, are trained sequentially.
+ */
+class BulkTrainer {
+
+	static final int MIN_PART_SIZE = 64;
+
+	//Trains model on every stride-th buffer instance. Returns true if the parallel path was used
+	static boolean train(Classifier model, Instances buffer, int stride){
+		int sampled = (buffer.size() + stride - 1) / stride;
+		return train(model, buffer, stride, Math.min(Runtime.getRuntime().availableProcessors(), sampled / MIN_PART_SIZE));
+	}
+
+	//As train, splitting the sampled buffer into the given number of parts
+	static boolean train(Classifier model, Instances buffer, int stride, int parts){
+		int sampled = (buffer.size() + stride - 1) / stride;
+		if(parts < 2 || !NaiveBayesMerge.canMerge(model)){
+			trainRange(model, buffer, stride, 0, sampled);
+			return false;
+		}
+
+		Classifier[] partials = new Classifier[parts];
+		for(int p = 0; p < parts; p++) partials[p] = model.copy();
+		IntStream.range(0, parts).parallel().forEach(p ->
+				trainRange(partials[p], buffer, stride, p * sampled / parts, (p + 1) * sampled / parts));
+
+		//an observer type that cannot be merged means the partial work is discarded
+		for(Classifier partial : partials){
+			if(!NaiveBayesMerge.hasMergeableObservers(partial)){
+				trainRange(model, buffer, stride, 0, sampled);
+				return false;
+			}
+		}
+		for(Classifier partial : partials) NaiveBayesMerge.merge(model, partial);
+		return true;
+	}
+
+	//Trains on sampled positions [from, to), where sampled position i is buffer instance i * stride
+	private static void trainRange(Classifier model, Instances buffer, int stride, int from, int to){
+		for(int i = from; i < to; i++) model.trainOnInstance(buffer.get(i * stride));
+	}
+}
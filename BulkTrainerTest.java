@@ -0,0 +1,195 @@
+/*
+ * BulkTrainerTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import moa.classifiers.TrainingWeight;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.GreenwaldKhannaNumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.ObserverStatistics;
+import moa.core.AutoExpandVector;
+import moa.core.DoubleVector;
+import moa.core.FastVector;
+import moa.core.GaussianEstimator;
+
+//Checks a NaiveBayes trained by BulkTrainer from merged partial models matches one trained sequentially
+public class BulkTrainerTest {
+
+	static final int NUM_CLASSES = 3;
+	static final int NUM_VALUES = 4;
+	static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void mergedModelMatchesSequential(){
+		Instances header = header();
+		Instances buffer = stream(header, 2000, new Random(1));
+		Instances heldOut = stream(header, 500, new Random(2));
+
+		for(int stride : new int[]{1, 3}){
+			for(int parts : new int[]{2, 4, 7}){
+				NaiveBayes merged = naiveBayes(header);
+				assertTrue(BulkTrainer.train(merged, buffer, stride, parts));
+				NaiveBayes sequential = naiveBayes(header);
+				for(int i = 0; i < buffer.size(); i += stride) sequential.trainOnInstance(buffer.get(i));
+				assertSameModel(sequential, merged, heldOut);
+			}
+		}
+	}
+
+	@Test
+	public void unmergeableObserverFallsBackToSequential() throws ReflectiveOperationException {
+		Instances header = header();
+		Instances buffer = stream(header, 2000, new Random(3));
+		Instances heldOut = stream(header, 500, new Random(4));
+
+		NaiveBayes fallback = naiveBayes(header);
+		observers(fallback).set(0, new GreenwaldKhannaNumericAttributeClassObserver());
+		assertFalse(BulkTrainer.train(fallback, buffer, 1, 4));
+
+		NaiveBayes sequential = naiveBayes(header);
+		observers(sequential).set(0, new GreenwaldKhannaNumericAttributeClassObserver());
+		for(int i = 0; i < buffer.size(); i++) sequential.trainOnInstance(buffer.get(i));
+
+		//the partial work must be discarded, not merged in alongside the sequential pass
+		assertEquals(TrainingWeight.get(sequential), TrainingWeight.get(fallback), 0.0);
+		assertArrayEquals(classDistribution(sequential), classDistribution(fallback), 0.0);
+		assertTrue(observers(fallback).get(0) instanceof GreenwaldKhannaNumericAttributeClassObserver);
+		for(int i = 0; i < heldOut.size(); i++)
+			assertArrayEquals(sequential.getVotesForInstance(heldOut.get(i)), fallback.getVotesForInstance(heldOut.get(i)), 0.0);
+	}
+
+	private static void assertSameModel(NaiveBayes expected, NaiveBayes actual, Instances heldOut){
+		assertEquals(TrainingWeight.get(expected), TrainingWeight.get(actual), 0.0);
+		assertArrayEquals(classDistribution(expected), classDistribution(actual), 0.0);
+
+		AutoExpandVector<AttributeClassObserver> expectedObs = observers(expected);
+		AutoExpandVector<AttributeClassObserver> actualObs = observers(actual);
+		for(int a = 0; a < heldOut.numAttributes() - 1; a++){
+			for(int c = 0; c < NUM_CLASSES; c++){
+				if(expectedObs.get(a) instanceof GaussianNumericAttributeClassObserver){
+					GaussianNumericAttributeClassObserver e = (GaussianNumericAttributeClassObserver) expectedObs.get(a);
+					GaussianNumericAttributeClassObserver o = (GaussianNumericAttributeClassObserver) actualObs.get(a);
+					GaussianEstimator eEst = ObserverStatistics.getEstimator(e, c);
+					GaussianEstimator oEst = ObserverStatistics.getEstimator(o, c);
+					assertEquals(eEst.getTotalWeightObserved(), oEst.getTotalWeightObserved(), 0.0);
+					assertEquals(eEst.getMean(), oEst.getMean(), TOLERANCE);
+					assertEquals(eEst.getVariance(), oEst.getVariance(), TOLERANCE * eEst.getVariance());
+					assertEquals(ObserverStatistics.getMin(e, c), ObserverStatistics.getMin(o, c), 0.0);
+					assertEquals(ObserverStatistics.getMax(e, c), ObserverStatistics.getMax(o, c), 0.0);
+				} else {
+					DoubleVector eCounts = ObserverStatistics.getCounts((NominalAttributeClassObserver) expectedObs.get(a), c);
+					DoubleVector oCounts = ObserverStatistics.getCounts((NominalAttributeClassObserver) actualObs.get(a), c);
+					assertArrayEquals(eCounts.getArrayCopy(), oCounts.getArrayCopy(), 0.0);
+				}
+			}
+		}
+
+		for(int i = 0; i < heldOut.size(); i++){
+			Instance inst = heldOut.get(i);
+			double[] e = expected.getVotesForInstance(inst);
+			double[] o = actual.getVotesForInstance(inst);
+			for(int c = 0; c < e.length; c++) assertEquals(e[c], o[c], TOLERANCE * Math.abs(e[c]));
+			assertEquals(expected.correctlyClassifies(inst), actual.correctlyClassifies(inst));
+		}
+	}
+
+	private static double[] classDistribution(NaiveBayes nb){
+		double[] votes = new double[NUM_CLASSES];
+		try {
+			Field f = NaiveBayes.class.getDeclaredField("observedClassDistribution");
+			f.setAccessible(true);
+			DoubleVector dist = (DoubleVector) f.get(nb);
+			for(int c = 0; c < NUM_CLASSES; c++) votes[c] = dist.getValue(c);
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+		return votes;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static AutoExpandVector<AttributeClassObserver> observers(NaiveBayes nb){
+		try {
+			Field f = NaiveBayes.class.getDeclaredField("attributeObservers");
+			f.setAccessible(true);
+			AutoExpandVector<AttributeClassObserver> obs = (AutoExpandVector<AttributeClassObserver>) f.get(nb);
+			assertNotNull(obs);
+			return obs;
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static NaiveBayes naiveBayes(Instances header){
+		NaiveBayes nb = new NaiveBayes();
+		nb.setModelContext(new InstancesHeader(header));
+		nb.prepareForUse();
+		assertNull(observers(nb).get(0));
+		return nb;
+	}
+
+	private static Instances header(){
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x"));
+		attributes.addElement(new Attribute("y"));
+		attributes.addElement(new Attribute("n", Arrays.asList("a", "b", "c", "d")));
+		attributes.addElement(new Attribute("class", Arrays.asList("0", "1", "2")));
+		InstancesHeader header = new InstancesHeader(new Instances("bulkTrainer", attributes, 0));
+		header.setClassIndex(3);
+		return header;
+	}
+
+	//Class-dependent numeric and nominal values with varied weights
+	private static Instances stream(Instances header, int size, Random random){
+		Instances data = new Instances(header, size);
+		for(int i = 0; i < size; i++){
+			int c = random.nextInt(NUM_CLASSES);
+			double[] values = {
+					c + random.nextGaussian(),
+					10 * c + 3 * random.nextGaussian(),
+					(c + random.nextInt(2)) % NUM_VALUES,
+					c};
+			Instance inst = new DenseInstance(0.5 + random.nextInt(3), values);
+			inst.setDataset(header);
+			data.add(inst);
+		}
+		return data;
+	}
+}
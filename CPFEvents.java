@@ -0,0 +1,114 @@
+/*
+ * CPFEvents.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * JDK Flight Recorder events for GCPF and GAD. Events are only populated after shouldCommit(),
+ * so with recording off each site costs an enabled check and nothing else.
+ * Enable with e.g. -XX:StartFlightRecording or jcmd <pid> JFR.start, filtering on category "MOA".
+ */
+final class CPFEvents {
+
+	private CPFEvents(){}
+
+	@Name("moa.WarningZone")
+	@Label("Warning Zone")
+	@Description("Time spent in the drift detector's warning zone")
+	@Category({"MOA", "Drift"})
+	static class WarningZone extends Event {
+		@Label("Learner")
+		String learner;
+		@Label("Start Instance")
+		long startInstance;
+		@Label("Instances In Warning")
+		long instances;
+		@Label("Ended In Drift")
+		boolean drift;
+	}
+
+	@Name("moa.DriftResolution")
+	@Label("Drift Resolution")
+	@Description("Handling of a detected drift, from detection until the next model is in place")
+	@Category({"MOA", "Drift"})
+	static class DriftResolution extends Event {
+		@Label("Learner")
+		String learner;
+		@Label("Instance")
+		long instance;
+		@Label("Buffer Size")
+		int bufferSize;
+		@Label("Pool Size")
+		int poolSize;
+		@Label("Selected Model")
+		int selectedModel;
+	}
+
+	@Name("moa.ModelReuse")
+	@Label("Model Reuse")
+	@Description("A pool model selected as the next concept")
+	@Category({"MOA", "Pool"})
+	static class ModelReuse extends Event {
+		@Label("Reused Model")
+		int reusedModel;
+		@Label("New Model")
+		int newModel;
+		@Label("Buffer Accuracy")
+		double bufferAccuracy;
+	}
+
+	@Name("moa.ModelMerge")
+	@Label("Model Merge")
+	@Description("Two pool models found similar enough to merge")
+	@Category({"MOA", "Pool"})
+	static class ModelMerge extends Event {
+		@Label("Kept Model")
+		int keptModel;
+		@Label("Removed Model")
+		int removedModel;
+	}
+
+	@Name("moa.ModelFade")
+	@Label("Model Fade")
+	@Description("A pool model removed after running out of fade points")
+	@Category({"MOA", "Pool"})
+	static class ModelFade extends Event {
+		@Label("Model")
+		int model;
+	}
+
+	@Name("moa.BoundaryRecomputation")
+	@Label("Boundary Recomputation")
+	@Description("Recomputation of the G-mean optimal decision boundary")
+	@Category({"MOA", "Drift"})
+	static class BoundaryRecomputation extends Event {
+		@Label("Learner")
+		String learner;
+		@Label("Old Boundary")
+		double oldBoundary;
+		@Label("New Boundary")
+		double newBoundary;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Challenger.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.Classifier;
+
+//An additional GCPF challenger model with its own comparison counters. Work on a challenger runs on
+//a worker thread; pending holds the last task, which must finish before the challenger is touched again.
+//In-control instances reach challengers a Batch at a time, so each costs the ingestion thread a few stores.
+class Challenger implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	Classifier model;
+	int minCorrect = 0;
+	int majCorrect = 0;
+	transient Future<?> pending = null;
+
+	Challenger(Classifier model){
+		this.model = model;
+	}
+
+	//Instances to test then train challengers on, in stream order, with the boundary each was tested at.
+	//Instances are held until the batch runs, as the warning buffer holds them
+	static class Batch implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		final Instance[] insts;
+		final double[] boundaries;
+		final boolean[] score;
+		final boolean[] train;
+		int size = 0;
+
+		Batch(int capacity){
+			insts = new Instance[capacity];
+			boundaries = new double[capacity];
+			score = new boolean[capacity];
+			train = new boolean[capacity];
+		}
+
+		boolean isFull(){
+			return size == insts.length;
+		}
+
+		void addScore(Instance inst, double decisionBoundary){
+			insts[size] = inst;
+			boundaries[size] = decisionBoundary;
+			score[size] = true;
+			train[size++] = false;
+		}
+
+		//Marks the last instance for training if it is inst, otherwise adds inst to train on only
+		void addTrain(Instance inst){
+			if(size > 0 && insts[size - 1] == inst && !train[size - 1]){
+				train[size - 1] = true;
+				return;
+			}
+			insts[size] = inst;
+			score[size] = false;
+			train[size++] = true;
+		}
+
+		void clear(){
+			Arrays.fill(insts, 0, size, null);
+			size = 0;
+		}
+	}
+
+	//Runs a batch on this challenger; called on a worker thread
+	void run(Batch batch){
+		for(int i = 0; i < batch.size; i++){
+			if(batch.score[i]) score(batch.insts[i], batch.boundaries[i]);
+			if(batch.train[i]) model.trainOnInstance(batch.insts[i]);
+		}
+	}
+
+	//Blocks until this challenger's queued work is done. Waiting continues through interrupts, which are
+	//restored afterwards, since returning early would let the next task train the model concurrently
+	void await(){
+		if(pending == null) return;
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					pending.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			pending = null;
+			throw new RuntimeException("Challenger task failed", e.getCause());
+		} finally {
+			if(interrupted) Thread.currentThread().interrupt();
+		}
+		pending = null;
+	}
+
+	//Counts results the same way as GCPF does for newModel so G-means are comparable
+	void score(Instance inst, double decisionBoundary){
+		int trueClass = (int) inst.classValue();
+		double[] votes = model.getVotesForInstance(inst);
+		double pred;
+		if(votes.length > 1)
+			pred = votes[1]/votes[0]+votes[1] > decisionBoundary ? 1.0 : 0.0;
+		else pred = 0;
+		if(pred == trueClass){
+			if(inst.classValue() == 0) majCorrect ++;
+		} else{
+			if(inst.classValue() == 0) minCorrect ++;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * ConceptFingerprintFile.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.Classifier;
+import moa.core.Utils;
+
+/*
+ * Append-only file of behavioural fingerprints for models removed from a GCPF pool. A fingerprint is
+ * the model's predicted class on each instance of a fixed probe set plus its accuracy counts, so
+ * concept similarity can be compared post-hoc without keeping the models. Queries stream the file
+ * and hold at most two fingerprints in memory. Model numbers are only unique within one run, so the
+ * file is cleared when a run starts.
+ */
+public class ConceptFingerprintFile {
+
+	private final File file;
+
+	public static class Fingerprint {
+		public int model;
+		public int startInstance;
+		public int endInstance;
+		public String destination;
+		public int[] accuracy; //minority seen, minority correct, majority seen, majority correct
+		public byte[] predictions; //predicted class per probe instance
+	}
+
+	public ConceptFingerprintFile(File file){
+		this.file = file;
+	}
+
+	//Builds a fingerprint by predicting each probe instance with the model
+	public static Fingerprint fingerprint(int model, Classifier classifier, List<Instance> probes,
+			int startInstance, int endInstance, String destination, Integer[] accuracy){
+		Fingerprint f = new Fingerprint();
+		f.model = model;
+		f.startInstance = startInstance;
+		f.endInstance = endInstance;
+		f.destination = destination;
+		f.accuracy = new int[4];
+		for(int i = 0; i < 4; i++) f.accuracy[i] = accuracy == null ? 0 : accuracy[i];
+		f.predictions = new byte[probes.size()];
+		for(int i = 0; i < probes.size(); i++)
+			f.predictions[i] = (byte) Utils.maxIndex(classifier.getVotesForInstance(probes.get(i)));
+		return f;
+	}
+
+	//Empties the file, creating it if needed
+	public void clear() throws IOException {
+		new FileOutputStream(file).close();
+	}
+
+	public void append(Fingerprint f) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))){
+			out.writeInt(f.model);
+			out.writeInt(f.startInstance);
+			out.writeInt(f.endInstance);
+			out.writeUTF(f.destination);
+			for(int i = 0; i < 4; i++) out.writeInt(f.accuracy[i]);
+			out.writeInt(f.predictions.length);
+			out.write(f.predictions);
+		}
+	}
+
+	//Returns the fingerprint for a model, or null if it was never written
+	public Fingerprint find(int model) throws IOException {
+		if(!file.exists()) return null;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+			Fingerprint f;
+			while((f = read(in)) != null)
+				if(f.model == model) return f;
+		}
+		return null;
+	}
+
+	//Proportion of shared probe instances on which two removed models predict the same class
+	public double similarity(int modelA, int modelB) throws IOException {
+		Fingerprint a = find(modelA);
+		Fingerprint b = find(modelB);
+		if(a == null || b == null)
+			throw new IllegalArgumentException("No fingerprint for model " + (a == null ? modelA : modelB));
+		return similarity(a, b);
+	}
+
+	public static double similarity(Fingerprint a, Fingerprint b){
+		int probes = Math.min(a.predictions.length, b.predictions.length);
+		if(probes == 0) return 0;
+		int agreed = 0;
+		for(int i = 0; i < probes; i++)
+			if(a.predictions[i] == b.predictions[i]) agreed++;
+		return (double) agreed / probes;
+	}
+
+	//Returns the removed model most similar to the given one, or -1 if there are no others
+	public int mostSimilar(int model) throws IOException {
+		Fingerprint target = find(model);
+		if(target == null) throw new IllegalArgumentException("No fingerprint for model " + model);
+		int best = -1;
+		double bestSimilarity = -1;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+			Fingerprint f;
+			while((f = read(in)) != null){
+				if(f.model == model) continue;
+				double sim = similarity(target, f);
+				if(sim > bestSimilarity){
+					bestSimilarity = sim;
+					best = f.model;
+				}
+			}
+		}
+		return best;
+	}
+
+	private static Fingerprint read(DataInputStream in) throws IOException {
+		Fingerprint f = new Fingerprint();
+		try {
+			f.model = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		f.startInstance = in.readInt();
+		f.endInstance = in.readInt();
+		f.destination = in.readUTF();
+		f.accuracy = new int[4];
+		for(int i = 0; i < 4; i++) f.accuracy[i] = in.readInt();
+		f.predictions = new byte[in.readInt()];
+		in.readFully(f.predictions);
+		return f;
+	}
+}
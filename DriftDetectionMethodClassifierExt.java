@@ -19,7 +19,11 @@
 
 package moa.classifiers.drift;
 
+import java.util.BitSet;
+
 import moa.classifiers.Classifier;
+import moa.classifiers.core.driftdetection.BatchChangeDetector;
+import moa.classifiers.core.driftdetection.ChangeDetector;
 
 public class DriftDetectionMethodClassifierExt extends DriftDetectionMethodClassifier{
 
@@ -40,4 +44,29 @@ public class DriftDetectionMethodClassifierExt extends DriftDetectionMethodClass
 	public Classifier getNewClassifier(){
 		return this.newclassifier;
 	}
+	
+	//Feeds bits from..to of errors to the drift detector, stopping at the first warning or drift.
+	//Returns that offset with ddmLevel set for it, or -1 with ddmLevel set for the last bit
+	public int detectBatch(BitSet errors, int from, int to){
+		int offset = inputBatch(this.driftDetectionMethod, errors, from, to);
+		this.ddmLevel = DDM_INCONTROL_LEVEL;
+		if (this.driftDetectionMethod.getChange()) {
+			this.ddmLevel = DDM_OUTCONTROL_LEVEL;
+		}
+		if (this.driftDetectionMethod.getWarningZone()) {
+			this.ddmLevel = DDM_WARNING_LEVEL;
+		}
+		return offset;
+	}
+	
+	//Uses the detector's batch path when it has one, otherwise inputs and checks one bit at a time
+	public static int inputBatch(ChangeDetector detector, BitSet errors, int from, int to){
+		if(detector instanceof BatchChangeDetector)
+			return ((BatchChangeDetector) detector).inputBatch(errors, from, to);
+		for(int i = from; i < to; i++){
+			detector.input(errors.get(i) ? 1.0 : 0.0);
+			if(detector.getChange() || detector.getWarningZone()) return i;
+		}
+		return -1;
+	}
 }
@@ -0,0 +1,149 @@
+/*
+ * FeatureHasher.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+import moa.core.FastVector;
+
+/*
+ * Signed feature hashing of instances into a fixed number of numeric features, output as
+ * SparseInstance. Only stored (non-zero) numeric values of the input are visited, so cost scales with
+ * the number of non-zeros plus nominal attributes rather than schema width. Nominal values hash as
+ * name=value indicators, the first value included; sparse input leaves that value unstored, so
+ * nominal attributes are read whether stored or not.
+ */
+class FeatureHasher implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int numFeatures;
+	private InstancesHeader hashedHeader = null;
+	private int[] attributeHashes; //per source attribute
+	private boolean[] nominal; //per source attribute
+	private int[] nominalAttributes;
+
+	//the last input and its hashed form, so the test and train steps see the same object. The
+	//snapshot catches a stream that mutates and reuses one Instance between calls
+	private transient Instance lastInput = null;
+	private transient Instance lastOutput = null;
+	private transient InstanceSnapshot lastContent = null;
+
+	FeatureHasher(int numFeatures){
+		this.numFeatures = numFeatures;
+	}
+
+	Instance hash(Instance inst){
+		if(inst == lastInput && lastContent.matches(inst)) return lastOutput;
+		if(hashedHeader == null) buildHeader(inst);
+
+		int classIndex = inst.classIndex();
+		int nnz = inst.numValues();
+		long[] buckets = new long[nnz + nominalAttributes.length]; //bucket << 32 | position, so sorting groups buckets
+		double[] values = new double[nnz + nominalAttributes.length];
+		int n = 0;
+		for(int i = 0; i < nnz; i++){
+			int a = inst.index(i);
+			double v = inst.valueSparse(i);
+			if(a == classIndex || nominal[a] || v == 0 || Double.isNaN(v)) continue;
+			int h = attributeHashes[a];
+			values[n] = (h & 0x40000000) == 0 ? v : -v;
+			buckets[n] = ((long) Math.floorMod(h, numFeatures) << 32) | n;
+			n++;
+		}
+		for(int a : nominalAttributes){
+			double v = inst.value(a);
+			if(a == classIndex || Double.isNaN(v)) continue;
+			int h = mix(attributeHashes[a] * 31 + (int) v);
+			values[n] = (h & 0x40000000) == 0 ? 1 : -1;
+			buckets[n] = ((long) Math.floorMod(h, numFeatures) << 32) | n;
+			n++;
+		}
+		Arrays.sort(buckets, 0, n);
+
+		//merge collisions, then append the class at index numFeatures
+		int[] indices = new int[n + 1];
+		double[] merged = new double[n + 1];
+		int m = 0;
+		for(int i = 0; i < n; i++){
+			int bucket = (int) (buckets[i] >>> 32);
+			double v = values[(int) buckets[i]];
+			if(m > 0 && indices[m - 1] == bucket) merged[m - 1] += v;
+			else {
+				indices[m] = bucket;
+				merged[m++] = v;
+			}
+		}
+		if(!inst.classIsMissing()){
+			indices[m] = numFeatures;
+			merged[m++] = inst.classValue();
+		}
+
+		Instance hashed = new SparseInstance(inst.weight(), Arrays.copyOf(merged, m), Arrays.copyOf(indices, m), numFeatures + 1);
+		hashed.setDataset(hashedHeader);
+		if(lastContent == null) lastContent = new InstanceSnapshot();
+		lastContent.set(inst);
+		lastInput = inst;
+		lastOutput = hashed;
+		return hashed;
+	}
+
+	InstancesHeader getHeader(){
+		return hashedHeader;
+	}
+
+	private void buildHeader(Instance inst){
+		attributeHashes = new int[inst.numAttributes()];
+		nominal = new boolean[inst.numAttributes()];
+		int numNominal = 0;
+		for(int i = 0; i < inst.numAttributes(); i++){
+			attributeHashes[i] = mix(inst.attribute(i).name().hashCode());
+			nominal[i] = inst.attribute(i).isNominal();
+			if(nominal[i]) numNominal++;
+		}
+		nominalAttributes = new int[numNominal];
+		for(int i = 0, k = 0; i < inst.numAttributes(); i++)
+			if(nominal[i]) nominalAttributes[k++] = i;
+
+		FastVector attributes = new FastVector();
+		for(int i = 0; i < numFeatures; i++)
+			attributes.addElement(new Attribute("h" + i));
+		attributes.addElement(inst.classAttribute());
+		hashedHeader = new InstancesHeader(new Instances("hashed", attributes, 0));
+		hashedHeader.setClassIndex(numFeatures);
+	}
+
+	//murmur3 finaliser, spreads bits so bucket and sign are independent
+	private static int mix(int h){
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
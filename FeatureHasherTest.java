@@ -0,0 +1,114 @@
+/*
+ * FeatureHasherTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+import moa.core.FastVector;
+
+//Checks the hasher and vote cache notice a reused Instance whose content changed, and that the first
+//nominal value is hashed whether the input is dense or sparse
+public class FeatureHasherTest {
+
+	static final int FEATURES = 64;
+
+	@Test
+	public void reusedInstanceIsRehashedWhenMutated(){
+		FeatureHasher hasher = new FeatureHasher(FEATURES);
+		Instance inst = instance(1.5, 2, 0);
+		Instance first = hasher.hash(inst);
+		assertSame(first, hasher.hash(inst));
+
+		inst.setValue(0, 3.5);
+		Instance mutated = hasher.hash(inst);
+		assertNotSame(first, mutated);
+		assertEquals(hashed(hasher, instance(3.5, 2, 0)), Arrays.toString(mutated.toDoubleArray()));
+
+		inst.setClassValue(1);
+		assertEquals(1.0, hasher.hash(inst).classValue(), 0.0);
+		inst.setWeight(2.0);
+		assertEquals(2.0, hasher.hash(inst).weight(), 0.0);
+	}
+
+	@Test
+	public void firstNominalValueIsHashed(){
+		FeatureHasher hasher = new FeatureHasher(FEATURES);
+		Instance dense = instance(0, 0, 0);
+		Instance hashed = hasher.hash(dense);
+		assertEquals(1.0, Math.abs(sum(hashed)), 0.0); //the numeric zero adds nothing, the nominal value one indicator
+		assertNotEquals(hashed(hasher, instance(0, 0, 0)), hashed(hasher, instance(0, 1, 0)));
+
+		//sparse input leaves both zeros unstored but hashes the same
+		Instance sparse = new SparseInstance(1.0, new double[]{0}, new int[]{2}, 3);
+		sparse.setDataset(dense.dataset());
+		assertEquals(Arrays.toString(hashed.toDoubleArray()), hashed(hasher, sparse));
+	}
+
+	@Test
+	public void voteCacheMissesMutatedInstance(){
+		VoteCache cache = new VoteCache();
+		Instance inst = instance(1.5, 2, 0);
+		double[] votes = {0.2, 0.8};
+		cache.put(0, 7, inst, votes);
+		assertArrayEquals(votes, cache.get(0, 7, inst), 0.0);
+		assertNull(cache.get(0, 7, instance(1.5, 2, 0)));
+		inst.setValue(1, 1);
+		assertNull(cache.get(0, 7, inst));
+	}
+
+	private static String hashed(FeatureHasher hasher, Instance inst){
+		return Arrays.toString(hasher.hash(inst).toDoubleArray());
+	}
+
+	private static double sum(Instance hashed){
+		double sum = 0;
+		for(int i = 0; i < hashed.numValues(); i++)
+			if(hashed.index(i) != hashed.classIndex()) sum += hashed.valueSparse(i);
+		return sum;
+	}
+
+	private static Instance instance(double x, int colour, int classValue){
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x"));
+		attributes.addElement(new Attribute("colour", Arrays.asList("red", "green", "blue")));
+		attributes.addElement(new Attribute("class", Arrays.asList("0", "1")));
+		InstancesHeader header = new InstancesHeader(new Instances("hasher", attributes, 0));
+		header.setClassIndex(2);
+		Instance inst = new DenseInstance(1.0, new double[]{x, colour, classValue});
+		inst.setDataset(header);
+		return inst;
+	}
+}
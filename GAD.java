@@ -1,65 +1,169 @@
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
 import java.util.TreeSet;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.util.FastMath;
 
+import com.github.javacliparser.ListOption;
+import com.github.javacliparser.MultiChoiceOption;
+import com.github.javacliparser.Option;
+import com.github.javacliparser.StringOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.WekaToSamoaInstanceConverter;
 
 import moa.classifiers.Classifier;
 import moa.classifiers.core.driftdetection.ADWINChangeDetector;
+import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.classifiers.drift.DriftDetectionMethodClassifierExt;
 import moa.classifiers.meta.WEKAClassifier;
 import moa.core.Example;
 import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
 import moa.core.Utils;
 import moa.evaluation.RobWindowAUC;
 import moa.evaluation.WindowAUCImbalancedPerformanceEvaluator;
 import moa.evaluation.RobWindowAUC.Estimator.Score;
+import moa.evaluation.WindowScoreBuffer;
+import moa.options.ClassOption;
+import moa.options.FlagOption;
+import moa.tasks.TaskMonitor;
 
 /*Not for public use - provided as part of submission for CIKM 2019 by Robert Anderson*/
 public class GAD extends DriftDetectionMethodClassifierExt {
 
+	private static final long serialVersionUID = 1L;
+
+	public FlagOption windowScoreEvalOption = new FlagOption(
+            "windowScoreEval",
+            'w',
+            "A flag that tracks scores for the decision boundary in primitive arrays rather than RobWindowAUC");
+
+	public ListOption ensembleDetectorsOption = new ListOption(
+            "ensembleDetectors",
+            'e',
+            "Drift detectors to run as an ensemble against the shared base learner (empty for a single detector)",
+            new ClassOption("detector", ' ', "Drift detector", ChangeDetector.class, "DDM"),
+            new Option[0], ',');
+
+	public StringOption ensembleThresholdsOption = new StringOption(
+            "ensembleThresholds",
+            't',
+            "Comma separated threshold policies crossed with each ensemble detector: 'gmean' for the adaptive boundary or a fixed boundary",
+            "gmean");
+
+	public MultiChoiceOption ensemblePolicyOption = new MultiChoiceOption(
+            "ensemblePolicy",
+            'y',
+            "How the ensemble variant whose output is served is chosen",
+            new String[]{"First", "BestGMean"},
+            new String[]{"Always serve the first variant", "Serve the variant with best G-mean since its last drift"},
+            1);
+
+	public FlagOption ensembleParallelOption = new FlagOption(
+            "ensembleParallel",
+            'x',
+            "A flag that updates ensemble variants in parallel");
+
 	RobWindowAUC eval = new RobWindowAUC();
+	InstanceExample evalExample = new InstanceExample(null); //reused wrapper for eval.addResult
+	WindowScoreBuffer windowScores = new WindowScoreBuffer();
 	double decisionBoundary = 0.5;
 	public double changeDetected = 0;
 	
+	long numberInstances = 0;
+	
+	//flight recorder event spanning the current warning zone, null outside one
+	transient CPFEvents.WarningZone warningEvent = null;
+	long warningStart = 0;
+	
+	//ensemble of detector/threshold variants, null when running a single detector
+	ArrayList<GADVariant> variants = null;
+	int servedVariant = 0;
+	
+	Classifier learnerPrototype; //prepared base learner, copied for each new classifier
+	ChangeDetector[] detectorPrototypes = new ChangeDetector[0]; //prepared ensemble detectors, copied for each variant
+	
+	//ListOption entries are not prepared with the other class options, so materialize them as
+	//WeightedMajorityAlgorithm does before resetLearning builds the variants
+	@Override
+	public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+		Option[] detectors = ensembleDetectorsOption.getList();
+		this.detectorPrototypes = new ChangeDetector[detectors.length];
+		for(int i = 0; i < detectors.length; i++){
+			monitor.setCurrentActivity("Materializing detector " + (i + 1) + "...", -1.0);
+			this.detectorPrototypes[i] = (ChangeDetector) ((ClassOption) detectors[i]).materializeObject(monitor, repository);
+			if(monitor.taskShouldAbort()) return;
+			monitor.setCurrentActivity("Preparing detector " + (i + 1) + "...", -1.0);
+			this.detectorPrototypes[i].prepareForUse(monitor, repository);
+			if(monitor.taskShouldAbort()) return;
+		}
+		super.prepareForUseImpl(monitor, repository);
+	}
+	
+	@Override
+	public void resetLearningImpl() {
+		super.resetLearningImpl();
+		this.learnerPrototype = (Classifier) getPreparedClassOption(this.baseLearnerOption);
+		this.decisionBoundary = 0.5;
+		this.eval.reset();
+		this.windowScores = new WindowScoreBuffer(eval.widthOption.getValue());
+		this.servedVariant = 0;
+		this.numberInstances = 0;
+		this.warningEvent = null;
+		this.variants = null;
+		
+		if(detectorPrototypes.length == 0) return;
+		this.variants = new ArrayList<GADVariant>();
+		for(ChangeDetector detector : detectorPrototypes){
+			for(String threshold : ensembleThresholdsOption.getValue().split(",")){
+				ChangeDetector cd = (ChangeDetector) detector.copy();
+				if(threshold.trim().equalsIgnoreCase("gmean"))
+					variants.add(new GADVariant(cd, 0.5, true, eval.widthOption.getValue()));
+				else
+					variants.add(new GADVariant(cd, parseThreshold(threshold), false, eval.widthOption.getValue()));
+			}
+		}
+		this.decisionBoundary = variants.get(0).decisionBoundary;
+	}
+	
+	//A fixed boundary divides the class 1 vote in getVotesForInstance, so it must lie in (0,1]
+	private static double parseThreshold(String threshold){
+		double boundary;
+		try {
+			boundary = Double.parseDouble(threshold.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Ensemble threshold '" + threshold.trim() + "' is neither 'gmean' nor a number");
+		}
+		if(!(boundary > 0.0 && boundary <= 1.0))
+			throw new IllegalArgumentException("Ensemble threshold " + boundary + " must be in (0,1]");
+		return boundary;
+	}
+	
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        //this.numberInstances++;
+        this.numberInstances++;
         int trueClass = (int) inst.classValue();
-        boolean prediction;
         
 		//double[] x = learner.getVotesForInstance(inst);
 		double[] votes = this.classifier.getVotesForInstance(inst);
-		eval.addResult(new InstanceExample(inst), votes);
-		double pred;
-		if(votes.length > 1)
-			pred = votes[1]/votes[0]+votes[1] > decisionBoundary ? 1.0 : 0.0; 
-		else pred = 0;
-        
-        if (pred == trueClass) {
-            prediction = true;
-        } else {
-            prediction = false;
-        }
-        
-        //this.ddmLevel = this.driftDetectionMethod.computeNextVal(prediction);
-        this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
-        this.ddmLevel = DDM_INCONTROL_LEVEL;
-        if (this.driftDetectionMethod.getChange()) {
-         this.ddmLevel =  DDM_OUTCONTROL_LEVEL;
-        }
-        if (this.driftDetectionMethod.getWarningZone()) {
-           this.ddmLevel =  DDM_WARNING_LEVEL;
-        }
+		if(variants != null)
+			updateVariants(votes, trueClass, inst.weight());
+		else
+			updateDetector(inst, votes, trueClass);
+		
+		if(this.ddmLevel != DDM_WARNING_LEVEL) endWarningEvent();
+		
         switch (this.ddmLevel) {
             case DDM_WARNING_LEVEL:
                 //System.out.println("1 0 W");
             	//System.out.println("DDM_WARNING_LEVEL");
                 if (newClassifierReset == true) {
                     this.warningDetected++;
+                    warningStart = numberInstances;
+                    warningEvent = new CPFEvents.WarningZone();
+                    warningEvent.begin();
                     this.newclassifier.resetLearning();
                     newClassifierReset = false;
                 }
@@ -69,16 +173,38 @@ public class GAD extends DriftDetectionMethodClassifierExt {
             case DDM_OUTCONTROL_LEVEL:
                 //System.out.println("0 1 O");
             	//System.out.println("DDM_OUTCONTROL_LEVEL");
+            	CPFEvents.DriftResolution driftEvent = new CPFEvents.DriftResolution();
+            	driftEvent.begin();
                 this.changeDetected++;
                 this.classifier = null;
                 this.classifier = this.newclassifier;
                 if (this.classifier instanceof WEKAClassifier) {
                     ((WEKAClassifier) this.classifier).buildClassifier();
                 }
-                this.newclassifier = ((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy();
+                this.newclassifier = this.learnerPrototype.copy();
                 this.newclassifier.resetLearning();
-                getNewBoundary();
-                eval.reset();
+                if(variants == null){
+                	CPFEvents.BoundaryRecomputation boundaryEvent = new CPFEvents.BoundaryRecomputation();
+                	boundaryEvent.begin();
+                	double oldBoundary = decisionBoundary;
+                	getNewBoundary();
+                	if(boundaryEvent.shouldCommit()){
+                		boundaryEvent.learner = "GAD";
+                		boundaryEvent.oldBoundary = oldBoundary;
+                		boundaryEvent.newBoundary = decisionBoundary;
+                		boundaryEvent.commit();
+                	}
+                	eval.reset();
+                	windowScores.reset();
+                }
+                if(driftEvent.shouldCommit()){
+                	driftEvent.learner = "GAD";
+                	driftEvent.instance = numberInstances;
+                	driftEvent.bufferSize = newClassifierReset ? 0 : (int) (numberInstances - warningStart); //instances the new classifier was trained on
+                	driftEvent.poolSize = variants == null ? 1 : variants.size();
+                	driftEvent.selectedModel = servedVariant;
+                	driftEvent.commit();
+                }
                 break;
 
             case DDM_INCONTROL_LEVEL:
@@ -94,6 +220,87 @@ public class GAD extends DriftDetectionMethodClassifierExt {
         this.classifier.trainOnInstance(inst);
     }
     
+    private void endWarningEvent(){
+    	if(warningEvent == null) return;
+    	if(warningEvent.shouldCommit()){
+    		warningEvent.learner = "GAD";
+    		warningEvent.startInstance = warningStart;
+    		warningEvent.instances = numberInstances - warningStart;
+    		warningEvent.drift = this.ddmLevel == DDM_OUTCONTROL_LEVEL;
+    		warningEvent.commit();
+    	}
+    	warningEvent = null;
+    }
+    
+    //Single detector path: thresholds votes at decisionBoundary and feeds the drift detector
+    private void updateDetector(Instance inst, double[] votes, int trueClass){
+        boolean prediction;
+		if(windowScoreEvalOption.isSet()){
+			windowScores.addResult(votes, trueClass == 1, inst.weight());
+		} else {
+			evalExample.instance = inst;
+			eval.addResult(evalExample, votes);
+		}
+		double pred;
+		if(votes.length > 1)
+			pred = votes[1]/votes[0]+votes[1] > decisionBoundary ? 1.0 : 0.0; 
+		else pred = 0;
+        
+        if (pred == trueClass) {
+            prediction = true;
+        } else {
+            prediction = false;
+        }
+        
+        //this.ddmLevel = this.driftDetectionMethod.computeNextVal(prediction);
+        this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+        this.ddmLevel = DDM_INCONTROL_LEVEL;
+        if (this.driftDetectionMethod.getChange()) {
+         this.ddmLevel =  DDM_OUTCONTROL_LEVEL;
+        }
+        if (this.driftDetectionMethod.getWarningZone()) {
+           this.ddmLevel =  DDM_WARNING_LEVEL;
+        }
+    }
+    
+    //Feeds the shared votes to every variant and takes the served variant's level and boundary.
+    //The served variant is chosen before the update so its own drift is acted on.
+    private void updateVariants(final double[] votes, final int trueClass, final double weight){
+    	servedVariant = selectVariant();
+    	if(ensembleParallelOption.isSet())
+    		IntStream.range(0, variants.size()).parallel().forEach(i -> variants.get(i).update(votes, trueClass, weight));
+    	else
+    		for(GADVariant v : variants) v.update(votes, trueClass, weight);
+    	
+    	GADVariant served = variants.get(servedVariant);
+    	this.ddmLevel = DDM_INCONTROL_LEVEL;
+    	if (served.change) {
+    		this.ddmLevel = DDM_OUTCONTROL_LEVEL;
+    		for(GADVariant v : variants)
+    			if(v != served) v.learnerReplaced();
+    	}
+    	if (served.warning) {
+    		this.ddmLevel = DDM_WARNING_LEVEL;
+    	}
+    	this.decisionBoundary = served.decisionBoundary;
+    }
+    
+    private int selectVariant(){
+    	if(ensemblePolicyOption.getChosenIndex() == 0) return 0;
+    	int best = 0;
+    	for(int i = 1; i < variants.size(); i++)
+    		if(variants.get(i).getGMean() > variants.get(best).getGMean()) best = i;
+    	return best;
+    }
+    
+    public int getServedVariant(){
+    	return this.servedVariant;
+    }
+    
+    public int getVariantDrifts(int variant){
+    	return this.variants.get(variant).drifts;
+    }
+    
     @Override
     public double[] getVotesForInstance(Example<Instance> example){
     	double[] votes = this.classifier.getVotesForInstance(example);
@@ -104,6 +311,10 @@ public class GAD extends DriftDetectionMethodClassifierExt {
 	
     //Find optimal G-mean point in scoretree by iterating through scores
 	void getNewBoundary(){
+		if(windowScoreEvalOption.isSet()){
+			decisionBoundary = windowScores.getBoundary();
+			return;
+		}
 		TreeSet<Score> sortedScores = eval.getAucEstimator().getScoreTree();
 		double numPos = eval.getAucEstimator().getPos();
 		double numNeg = eval.getAucEstimator().getNeg();
@@ -0,0 +1,106 @@
+/*
+ * GADEnsembleTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import moa.classifiers.core.driftdetection.ADWINChangeDetector;
+import moa.classifiers.core.driftdetection.DDM;
+import moa.core.FastVector;
+
+//Runs GAD in ensemble mode, with its detectors given through the ListOption, over a stream with abrupt drifts
+public class GADEnsembleTest {
+
+	static final int CONCEPT_LENGTH = 3000;
+	static final int CONCEPTS = 4;
+
+	@Test
+	public void ensembleVariantsAreBuiltFromListedDetectors(){
+		GAD gad = ensemble("DDM,ADWINChangeDetector", "gmean,0.5");
+		assertEquals(4, gad.variants.size());
+		assertTrue(gad.variants.get(0).detector instanceof DDM);
+		assertTrue(gad.variants.get(1).detector instanceof DDM);
+		assertTrue(gad.variants.get(2).detector instanceof ADWINChangeDetector);
+		assertTrue(gad.variants.get(3).detector instanceof ADWINChangeDetector);
+		assertNotSame(gad.variants.get(0).detector, gad.variants.get(1).detector);
+		assertEquals(0.5, gad.variants.get(3).decisionBoundary, 0.0);
+
+		//every variant must see the drifts, and the served variant's drifts replace the learner
+		Instances header = header();
+		Random random = new Random(1);
+		for(int i = 0; i < CONCEPTS * CONCEPT_LENGTH; i++) gad.trainOnInstance(instance(header, random, i / CONCEPT_LENGTH));
+		for(int v = 0; v < gad.variants.size(); v++)
+			assertTrue("variant " + v + " found no drift", gad.getVariantDrifts(v) > 0);
+		assertTrue(gad.changeDetected > 0);
+	}
+
+	@Test
+	public void resetRebuildsFreshVariants(){
+		GAD gad = ensemble("DDM", "gmean");
+		Instances header = header();
+		Random random = new Random(2);
+		for(int i = 0; i < CONCEPTS * CONCEPT_LENGTH; i++) gad.trainOnInstance(instance(header, random, i / CONCEPT_LENGTH));
+		assertTrue(gad.getVariantDrifts(0) > 0);
+
+		gad.resetLearning();
+		assertEquals(1, gad.variants.size());
+		assertEquals(0, gad.getVariantDrifts(0));
+	}
+
+	private static GAD ensemble(String detectors, String thresholds){
+		GAD gad = new GAD();
+		gad.ensembleDetectorsOption.setValueViaCLIString(detectors);
+		gad.ensembleThresholdsOption.setValue(thresholds);
+		gad.windowScoreEvalOption.set();
+		gad.prepareForUse();
+		return gad;
+	}
+
+	private static Instances header(){
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x"));
+		attributes.addElement(new Attribute("class", Arrays.asList("0", "1")));
+		InstancesHeader header = new InstancesHeader(new Instances("gadEnsemble", attributes, 0));
+		header.setClassIndex(1);
+		return header;
+	}
+
+	//Imbalanced two class stream whose minority class swaps side of x = 0 with each concept
+	private static Instance instance(Instances header, Random random, int concept){
+		int classValue = random.nextInt(5) == 0 ? 1 : 0;
+		double side = (classValue == 1) == (concept % 2 == 0) ? 1.0 : -1.0;
+		Instance inst = new DenseInstance(1.0, new double[]{side * (1.0 + random.nextGaussian() * 0.5), classValue});
+		inst.setDataset(header);
+		return inst;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * GADVariant.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.Serializable;
+
+import org.apache.commons.math3.util.FastMath;
+
+import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.evaluation.WindowScoreBuffer;
+
+//One detector/threshold pairing in a GAD ensemble. Each variant sees the shared votes
+//for an instance and keeps its own detector, decision boundary and G-mean counts.
+class GADVariant implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	ChangeDetector detector;
+	boolean adaptiveBoundary; //if false the boundary stays at its initial value
+	double decisionBoundary;
+	WindowScoreBuffer scores;
+	boolean warning = false;
+	boolean change = false;
+	int drifts = 0;
+
+	//prequential counts since this variant's last drift
+	int minSeen = 0;
+	int minCorrect = 0;
+	int majSeen = 0;
+	int majCorrect = 0;
+
+	GADVariant(ChangeDetector detector, double boundary, boolean adaptiveBoundary, int windowWidth){
+		this.detector = detector;
+		this.scores = new WindowScoreBuffer(windowWidth);
+		this.decisionBoundary = boundary;
+		this.adaptiveBoundary = adaptiveBoundary;
+	}
+
+	//Thresholds shared votes, feeds the detector and records its warning/change state
+	void update(double[] votes, int trueClass, double weight){
+		double pred;
+		if(votes.length > 1)
+			pred = votes[1]/votes[0]+votes[1] > decisionBoundary ? 1.0 : 0.0;
+		else pred = 0;
+		boolean correct = pred == trueClass;
+
+		if(trueClass == 1){
+			minSeen++;
+			if(correct) minCorrect++;
+		} else {
+			majSeen++;
+			if(correct) majCorrect++;
+		}
+		scores.addResult(votes, trueClass == 1, weight);
+
+		detector.input(correct ? 0.0 : 1.0);
+		warning = detector.getWarningZone();
+		change = !warning && detector.getChange();
+		if (change){
+			drifts++;
+			newConcept();
+		}
+	}
+
+	//Called when the shared base learner is replaced by another variant's drift
+	void learnerReplaced(){
+		detector.resetLearning();
+		warning = false;
+		change = false;
+		newConcept();
+	}
+
+	//Recomputes the boundary and starts a new concept window
+	private void newConcept(){
+		if(adaptiveBoundary){
+			CPFEvents.BoundaryRecomputation boundaryEvent = new CPFEvents.BoundaryRecomputation();
+			boundaryEvent.begin();
+			double oldBoundary = decisionBoundary;
+			decisionBoundary = scores.getBoundary();
+			if(boundaryEvent.shouldCommit()){
+				boundaryEvent.learner = "GAD";
+				boundaryEvent.oldBoundary = oldBoundary;
+				boundaryEvent.newBoundary = decisionBoundary;
+				boundaryEvent.commit();
+			}
+		}
+		scores.reset();
+		minSeen = 0;
+		minCorrect = 0;
+		majSeen = 0;
+		majCorrect = 0;
+	}
+
+	double getGMean(){
+		double posAcc = minCorrect / Math.max(1.0, minSeen);
+		double negAcc = majCorrect / Math.max(1.0, majSeen);
+		return FastMath.sqrt(posAcc * negAcc);
+	}
+}
@@ -20,21 +20,32 @@
 package moa.classifiers.meta;
 
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Random;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import org.apache.commons.math3.util.FastMath;
 
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import moa.classifiers.Classifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.bayes.NaiveBayesOpen;
+import moa.classifiers.bayes.NaiveBayesPoolScorer;
 import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.core.GaussianEstimator;
@@ -42,6 +53,7 @@ import moa.core.InstanceExample;
 import moa.core.Utils;
 import moa.evaluation.RobWindowAUC;
 import moa.evaluation.RobWindowAUC.Estimator.Score;
+import moa.evaluation.WindowScoreBuffer;
 import moa.options.FlagOption;
 import moa.streams.ArffFileStream;
 
@@ -60,6 +72,79 @@ public class GCPF extends AbstractCPF{
             "trackConceptSim",
             's',
             "A flag that stores all classifiers so classifier similarity can be compared post-hoc");
+    
+    public FlagOption voteCacheOption = new FlagOption(
+            "voteCache",
+            'v',
+            "A flag that caches votes from the test step so they are reused in training and buffer scoring");
+    
+    public FlagOption windowScoreEvalOption = new FlagOption(
+            "windowScoreEval",
+            'w',
+            "A flag that tracks scores for the decision boundary in primitive arrays rather than RobWindowAUC");
+    
+    public IntOption poolMemoryBudgetOption = new IntOption(
+            "poolMemoryBudget",
+            'b',
+            "Memory budget for models held in the pool in kilobytes (0 for no limit)",
+            0, 0, Integer.MAX_VALUE);
+    
+    public FlagOption coldStorageOption = new FlagOption(
+            "coldStorage",
+            'o',
+            "A flag that demotes models over the memory budget to disk rather than removing them");
+    
+    public StringOption sharedLibraryOption = new StringOption(
+            "sharedLibrary",
+            'g',
+            "File of a concept library shared with other GCPF processes on this host (empty for none)",
+            "");
+    
+    public IntOption sharedLibrarySizeOption = new IntOption(
+            "sharedLibrarySize",
+            'z',
+            "Capacity in megabytes of the shared concept library file when this process creates it; an existing file keeps its own",
+            256, 1, 2047);
+    
+    public IntOption latencyBudgetOption = new IntOption(
+            "latencyBudget",
+            'u',
+            "Per-instance latency budget in microseconds; when exceeded, challenger training, buffer scoring and model comparisons are shed (0 for no budget)",
+            0, 0, Integer.MAX_VALUE);
+    
+    public StringOption fingerprintFileOption = new StringOption(
+            "fingerprintFile",
+            'r',
+            "With trackConceptSim, append fingerprints of removed models to this file rather than keeping the models (empty to keep models)",
+            "");
+    
+    public IntOption probeSizeOption = new IntOption(
+            "probeSize",
+            'n',
+            "Number of initial instances kept as the probe set for concept fingerprints",
+            200, 1, 100000);
+    
+    public IntOption hashedFeaturesOption = new IntOption(
+            "hashedFeatures",
+            'h',
+            "Number of features to hash instances into as sparse instances before learning (0 for no hashing)",
+            0, 0, Integer.MAX_VALUE);
+    
+    public IntOption numChallengersOption = new IntOption(
+            "numChallengers",
+            'k',
+            "Number of challenger models trained alongside the current model; those beyond the first test and train on worker threads in batches",
+            1, 1, 64);
+    
+    public FlagOption parallelBulkTrainOption = new FlagOption(
+            "parallelBulkTrain",
+            'j',
+            "A flag that trains the new model on the buffer in parallel when the base learner's statistics can be merged");
+    
+    public FlagOption vectorPoolScoringOption = new FlagOption(
+            "vectorPoolScoring",
+            'q',
+            "A flag that scores the buffer against all Naive Bayes pool models at once, vectorised across models when jdk.incubator.vector is available");
 	
 	//no max on classifiers, size restricted by fade points
 	ArrayList<Classifier> classifierCollection = new ArrayList<Classifier>();
@@ -101,6 +186,9 @@ public class GCPF extends AbstractCPF{
 	// Object to hold measurements relating to model - accuracy and model similarity
 	ArrayList<Integer[]> modelAccuracyMeasurements = new ArrayList<Integer[]>();
 	ArrayList<HashMap<Integer, Integer[]>> modelComparisonMeasurements  = new ArrayList<HashMap<Integer, Integer[]>>();;
+	// Pairs currently meeting the merge criteria, updated as comparison counts change. Packed as (modelA << 32 | modelB), modelA < modelB
+	TreeSet<Long> mergeCandidates = new TreeSet<Long>();
+	public static final int MIN_MERGE_OBSERVATIONS = 60;
 	
     //objects for model fading
     boolean fadeModels;
@@ -108,12 +196,73 @@ public class GCPF extends AbstractCPF{
     HashMap<Integer, Integer> modelFadeScores = new HashMap<Integer, Integer>();
     int modelsFaded = 0;
     
+    //votes reused between test, train and buffer scoring
+    boolean useVoteCache;
+    VoteCache voteCache = new VoteCache();
+    
+    //objects for memory-budgeted eviction
+    long poolMemoryBudget;
+    boolean coldStorage;
+    HashMap<Integer, Long> modelSizes = new HashMap<Integer, Long>(); //bytes per in-memory model, cleared when a model trains
+    HashMap<Integer, Integer> modelLastUsed = new HashMap<Integer, Integer>(); //drift number each model was last selected
+    HashMap<Integer, File> coldModels = new HashMap<Integer, File>(); //models demoted to disk
+    int modelsEvicted = 0;
+    int modelsDemoted = 0;
+    
+    //objects for the shared concept library
+    transient SharedConceptLibrary sharedLibrary = null;
+    long publisherId = new Random().nextLong(); //drawn again on reset, so copies that are reset publish as themselves
+    ArrayList<String> conceptKeys = new ArrayList<String>(); //origin publisher:slot of each slot's concept, kept through reuse
+    HashMap<String, Long> conceptVersions = new HashMap<String, Long>(); //latest library version held of each concept
+    String newModelKey = null; //concept of newModel once swapped out of the pool, null while it is a fresh model
+    int modelsImported = 0;
+    int publishesFailed = 0;
+    
+    //objects for latency load shedding
+    long latencyBudgetNanos;
+    double meanLatencyNanos = 0; //exponentially weighted, excluding drift resolutions
+    long driftLatencyNanos = 0; //latency of the last drift resolution, which is not shed
+    int shedStride = 1; //1 in shedStride challenger/buffer instances are used, 1 when not shedding
+    int challengerInstancesShed = 0;
+    int bufferInstancesShed = 0;
+    int compareCyclesShed = 0;
+    public static final double LATENCY_WEIGHT = 0.01;
+    
+    //objects for cheap model creation
+    Classifier learnerPrototype; //prepared base learner, copied for each new model
+    Classifier sharedModel = null; //reused model still shared with its pool slot, copied before it first trains
+    int reuseCopiesAvoided = 0;
+    
+    //objects for concept fingerprints, used in place of removedClassifierCollection when set
+    boolean useFingerprints = false;
+    transient ConceptFingerprintFile fingerprintFile = null; //reopened from fingerprintFileOption after a copy
+    ArrayList<Instance> probes = new ArrayList<Instance>();
+    int probeSize;
+    
+    FeatureHasher featureHasher = null;
+    
+    //challengers beyond newModel, each seeded differently and warm-started on a later part of the buffer
+    ArrayList<Challenger> extraChallengers = new ArrayList<Challenger>();
+    transient ExecutorService challengerExecutor = null;
+    int numChallengers;
+    Challenger.Batch challengerBatch = new Challenger.Batch(CHALLENGER_BATCH_SIZE); //filled on the ingestion thread
+    transient Challenger.Batch runningBatch = null; //last batch handed to the challengers, reused once they finish it
+    public static final int CHALLENGER_BATCH_SIZE = 256;
+    public static final int MAX_SHED_STRIDE = 10;
+    
     //objects for adaptive AUC
     RobWindowAUC eval = new RobWindowAUC();
+    InstanceExample evalExample = new InstanceExample(null); //reused wrapper for eval.addResult
+    boolean windowScoreEval;
+    WindowScoreBuffer windowScores = new WindowScoreBuffer();
 	double decisionBoundary = 0.5;
     
     public static final int DDM_BUILD_BUFFER = 3;
     
+    //flight recorder event spanning the current warning zone, null outside one
+    transient CPFEvents.WarningZone warningEvent = null;
+    int warningStart = 0;
+    
 	@Override
 	public void resetLearningImpl() {
 		
@@ -121,11 +270,20 @@ public class GCPF extends AbstractCPF{
 		this.removedClassifierCollection.clear();
 		this.modelAccuracyMeasurements.clear();
 		this.modelComparisonMeasurements.clear();
+		this.mergeCandidates.clear();
 		this.classifierDestination.clear();
+		this.classifierStart.clear();
 		this.modelFadeScores.clear();
+		this.modelSizes.clear();
+		this.modelLastUsed.clear();
+		for(File f : this.coldModels.values()) f.delete();
+		this.coldModels.clear();
 		
 		
-		this.classifier = ((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy();
+		this.learnerPrototype = (Classifier) getPreparedClassOption(this.baseLearnerOption);
+		this.sharedModel = null;
+		this.reuseCopiesAvoided = 0;
+		this.classifier = this.learnerPrototype.copy();
 		
 		this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftDetectionMethodOption)).copy();
 		
@@ -135,8 +293,13 @@ public class GCPF extends AbstractCPF{
 		this.modelCheckFreq = this.modelCheckFreqOption.getValue();
 		this.buffer.delete();
 	    this.numberInstances = 0;
+	    this.warningEvent = null;
 	    this.totalBufferInstances = 0;
 	    this.modelsFaded = 0;
+	    this.modelsEvicted = 0;
+	    this.modelsDemoted = 0;
+	    this.poolMemoryBudget = 1024L * this.poolMemoryBudgetOption.getValue();
+	    this.coldStorage = coldStorageOption.isSet() ? true : false;
 	    this.numDrifts = 0;
 	    this.modelReuses = 0;
 	    this.modelMerges = 0;
@@ -152,9 +315,61 @@ public class GCPF extends AbstractCPF{
 	   //model management flags
 	    fadeModels = fadeModelOption.isSet() ? true : false;
 	    trackConceptSim = trackConceptSimOption.isSet() ? true : false;
+	    useVoteCache = voteCacheOption.isSet() ? true : false;
+	    this.voteCache.clear();
+	    windowScoreEval = windowScoreEvalOption.isSet() ? true : false;
+	    this.eval.reset();
+	    this.windowScores = new WindowScoreBuffer(eval.widthOption.getValue());
+	    
+	    this.latencyBudgetNanos = 1000L * latencyBudgetOption.getValue();
+	    this.meanLatencyNanos = 0;
+	    this.driftLatencyNanos = 0;
+	    this.shedStride = 1;
+	    this.challengerInstancesShed = 0;
+	    this.bufferInstancesShed = 0;
+	    this.compareCyclesShed = 0;
+	    this.featureHasher = hashedFeaturesOption.getValue() > 0 ? new FeatureHasher(hashedFeaturesOption.getValue()) : null;
+	    this.probes.clear();
+	    this.numChallengers = numChallengersOption.getValue();
+	    this.extraChallengers.clear();
+	    this.challengerBatch.clear();
+	    this.runningBatch = null;
+	    if(this.challengerExecutor != null){
+	    	this.challengerExecutor.shutdownNow();
+	    	this.challengerExecutor = null;
+	    }
+	    this.probeSize = probeSizeOption.getValue();
+	    this.useFingerprints = trackConceptSim && !fingerprintFileOption.getValue().isEmpty();
+	    this.fingerprintFile = null;
+	    if(useFingerprints){
+	    	//slot numbers restart on reset, so fingerprints from an earlier run would be matched to new models
+	    	try {
+	    		getFingerprintFile().clear();
+	    	} catch (IOException e) {
+	    		throw new RuntimeException("Could not clear fingerprint file " + fingerprintFileOption.getValue(), e);
+	    	}
+	    }
+	    this.conceptKeys.clear();
+	    this.conceptVersions.clear();
+	    this.newModelKey = null;
+	    this.modelsImported = 0;
+	    this.publishesFailed = 0;
+	    this.publisherId = new Random().nextLong();
+	    if(this.sharedLibrary != null){
+	    	try { this.sharedLibrary.close(); } catch (IOException e) {}
+	    	this.sharedLibrary = null;
+	    }
+	    if(!sharedLibraryOption.getValue().isEmpty()){
+	    	try {
+	    		this.sharedLibrary = new SharedConceptLibrary(new File(sharedLibraryOption.getValue()),
+	    				1024L * 1024L * sharedLibrarySizeOption.getValue());
+	    	} catch (IOException e) {
+	    		throw new RuntimeException("Could not open shared concept library " + sharedLibraryOption.getValue(), e);
+	    	}
+	    }
 
 	    
-	    addModel(((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy());
+	    addModel(this.learnerPrototype.copy());
 	    this.classifierCollection.get(currentClassifier).prepareForUse();
 	 
 	}
@@ -166,15 +381,20 @@ public class GCPF extends AbstractCPF{
 	    this.modelAccuracyMeasurements.add(new Integer[] {0,0,0,0});
 	    this.modelComparisonMeasurements.add(new HashMap<Integer, Integer[]>());
 	    if(fadeModels) modelFadeScores.put(currentClassifier, 0);
+	    modelLastUsed.put(currentClassifier, numDrifts);
 	    classifierDestination.add(Integer.toString(classifierCollection.size() - 1));
 	    classifierStart.add(numberInstances);
+	    conceptKeys.add(publisherId + ":" + currentClassifier);
 	}
 	
     //Run usual drift-detection but check for equivalent models on change
     @Override
     public void trainOnInstanceImpl(Instance inst) {
     	
+    	long startTime = latencyBudgetNanos > 0 ? System.nanoTime() : 0;
     	this.numberInstances++;
+    	if(featureHasher != null) inst = featureHasher.hash(inst);
+    	if(useFingerprints && probes.size() < probeSize) probes.add(inst.copy());
         boolean prediction = getPrediction(inst);
         //if(inst.classValue() == 1.0)
         this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
@@ -186,6 +406,8 @@ public class GCPF extends AbstractCPF{
         if (this.driftDetectionMethod.getWarningZone()) {
             this.ddmLevel = DDM_WARNING_LEVEL;
         }
+        
+        if(this.ddmLevel != DDM_WARNING_LEVEL && this.ddmPriorLevel == DDM_WARNING_LEVEL) endWarningEvent();
 
         
         switch (this.ddmLevel) {
@@ -193,19 +415,45 @@ public class GCPF extends AbstractCPF{
             	if(this.ddmLevel != this.ddmPriorLevel){
             		this.warningDetected++;
             		buffer.delete();
+            		warningStart = numberInstances;
+            		warningEvent = new CPFEvents.WarningZone();
+            		warningEvent.begin();
             	}
                 buffer.add(inst);
                 break;
             case DDM_OUTCONTROL_LEVEL:
             	if(verbose) System.out.println("Drift detected at inst " + numberInstances);
+            	CPFEvents.DriftResolution driftEvent = new CPFEvents.DriftResolution();
+            	driftEvent.begin();
             	buffer.add(inst);
+            	int driftBufferSize = buffer.size();
                 this.changeDetected++;
                 numDrifts++;
                 modelReuses++;
                 compareClassifiers();
                 this.getNextModel();
+                
+                CPFEvents.BoundaryRecomputation boundaryEvent = new CPFEvents.BoundaryRecomputation();
+                boundaryEvent.begin();
+                double oldBoundary = decisionBoundary;
                 getNewBoundary();
+                if(boundaryEvent.shouldCommit()){
+                	boundaryEvent.learner = "GCPF";
+                	boundaryEvent.oldBoundary = oldBoundary;
+                	boundaryEvent.newBoundary = decisionBoundary;
+                	boundaryEvent.commit();
+                }
                 eval.reset();
+                windowScores.reset();
+                
+                if(driftEvent.shouldCommit()){
+                	driftEvent.learner = "GCPF";
+                	driftEvent.instance = numberInstances;
+                	driftEvent.bufferSize = driftBufferSize;
+                	driftEvent.poolSize = this.currentModels;
+                	driftEvent.selectedModel = currentClassifier;
+                	driftEvent.commit();
+                }
                 break;
 
             case DDM_INCONTROL_LEVEL:
@@ -218,6 +466,33 @@ public class GCPF extends AbstractCPF{
 
         }
         ddmPriorLevel = ddmLevel;
+        if(latencyBudgetNanos > 0){
+        	//a drift resolution is a one-off cost shedding cannot reduce, so it is kept out of the mean
+        	if(this.ddmLevel == DDM_OUTCONTROL_LEVEL) driftLatencyNanos = System.nanoTime() - startTime;
+        	else updateShedding(System.nanoTime() - startTime);
+        }
+    }
+    
+    //Sheds work in proportion to how far mean latency is over budget
+    private void updateShedding(long latencyNanos){
+    	meanLatencyNanos = meanLatencyNanos == 0 ? latencyNanos
+    			: (1 - LATENCY_WEIGHT) * meanLatencyNanos + LATENCY_WEIGHT * latencyNanos;
+    	if(meanLatencyNanos > latencyBudgetNanos)
+    		shedStride = (int) Math.min(MAX_SHED_STRIDE, Math.ceil(meanLatencyNanos / latencyBudgetNanos));
+    	else
+    		shedStride = 1;
+    }
+    
+    private void endWarningEvent(){
+    	if(warningEvent == null) return;
+    	if(warningEvent.shouldCommit()){
+    		warningEvent.learner = "GCPF";
+    		warningEvent.startInstance = warningStart;
+    		warningEvent.instances = numberInstances - warningStart;
+    		warningEvent.drift = this.ddmLevel == DDM_OUTCONTROL_LEVEL;
+    		warningEvent.commit();
+    	}
+    	warningEvent = null;
     }
     
     private boolean getPrediction(Instance inst){
@@ -239,8 +514,11 @@ public class GCPF extends AbstractCPF{
     			if(inst.classValue() == 0) newMinCorrect ++;
     		}
     	}
-    	votes = classifierCollection.get(currentClassifier).getVotesForInstance(inst);
-
+    	if(!extraChallengers.isEmpty()){
+    		if(challengerBatch.isFull()) submitChallengerBatch();
+    		challengerBatch.addScore(inst, decisionBoundary);
+    	}
+    	votes = getCurrentVotes(inst, numberInstances);
     	 
     	if(votes.length > 1)
 			pred = votes[1]/votes[0]+votes[1] > decisionBoundary ? 1.0 : 0.0; 
@@ -252,22 +530,121 @@ public class GCPF extends AbstractCPF{
 			if(inst.classValue() == 0) currMinCorrect ++;
 		}
     	
-    	eval.addResult(new InstanceExample(inst), votes);
+    	if(windowScoreEval){
+    		windowScores.addResult(votes, trueClass == 1, inst.weight());
+    	} else {
+    		evalExample.instance = inst;
+    		eval.addResult(evalExample, votes);
+    	}
     	if (inst.classValue() == 1) totalMinInst++;
     	else totalMajInst++;
     	
-    	if(totalMinInst + totalMajInst % modelCheckFreq == 0)
-    		compareClassifiers();
+    	if(totalMinInst + totalMajInst % modelCheckFreq == 0){
+    		if(shedStride > 1) compareCyclesShed++;
+    		else compareClassifiers();
+    	}
     		
 		return currPred;
     }
     
     private void trainClassifiers(Instance inst){
+    	if(sharedModel != null){
+    		if(classifierCollection.get(currentClassifier) == sharedModel){
+    			classifierCollection.set(currentClassifier, sharedModel.copy());
+    			sharedModel = null;
+    			reuseCopiesAvoided--;
+    		} else if(newModel == sharedModel){ //swapped out by compareClassifiers
+    			newModel = sharedModel.copy();
+    			sharedModel = null;
+    			reuseCopiesAvoided--;
+    		}
+    	}
     	((Classifier)this.classifierCollection.get(currentClassifier)).trainOnInstance(inst);
-    	if(newModel != null) newModel.trainOnInstance(inst);
+    	if(useVoteCache) voteCache.invalidate(currentClassifier);
+    	if(newModel != null){
+    		if(shedStride > 1 && numberInstances % shedStride != 0) challengerInstancesShed++;
+    		else newModel.trainOnInstance(inst);
+    	}
+    	if(!extraChallengers.isEmpty() && !(shedStride > 1 && numberInstances % shedStride != 0)){
+    		if(challengerBatch.isFull()) submitChallengerBatch();
+    		challengerBatch.addTrain(inst);
+    	}
+    }
+    
+    //Hands the filled batch to the challengers, one task each, without waiting for it. The batch
+    //before it must be finished first so it can be refilled, which is the only wait while in control
+    private void submitChallengerBatch(){
+    	for(Challenger c : extraChallengers) c.await();
+    	Challenger.Batch batch = challengerBatch;
+    	if(runningBatch == null) runningBatch = new Challenger.Batch(CHALLENGER_BATCH_SIZE);
+    	runningBatch.clear();
+    	challengerBatch = runningBatch;
+    	runningBatch = batch;
+    	runOnChallengers(c -> c.run(batch), false);
+    }
+    
+    //Brings every challenger's counts and model up to date with the instances seen so far
+    private void flushChallengers(){
+    	if(challengerBatch.size > 0) submitChallengerBatch();
+    	for(Challenger c : extraChallengers) c.await();
+    }
+    
+    //Submits a task per extra challenger, after that challenger's previous task, optionally waiting for all
+    private void runOnChallengers(Consumer<Challenger> task, boolean wait){
+    	if(challengerExecutor == null)
+    		challengerExecutor = Executors.newFixedThreadPool(Math.min(extraChallengers.size(), Runtime.getRuntime().availableProcessors()), r -> {
+    			Thread t = new Thread(r, "gcpf-challenger");
+    			t.setDaemon(true);
+    			return t;
+    		});
+    	for(Challenger c : extraChallengers){
+    		c.await();
+    		c.pending = challengerExecutor.submit(() -> task.accept(c));
+    	}
+    	if(wait) for(Challenger c : extraChallengers) c.await();
+    }
+    
+    //Votes of the current model for instance number seq, taken from the cache when enabled
+    private double[] getCurrentVotes(Instance inst, int seq){
+    	if(!useVoteCache) return classifierCollection.get(currentClassifier).getVotesForInstance(inst);
+    	double[] votes = voteCache.get(currentClassifier, seq, inst);
+    	if(votes == null){
+    		votes = classifierCollection.get(currentClassifier).getVotesForInstance(inst);
+    		voteCache.put(currentClassifier, seq, inst, votes);
+    	}
+    	return votes;
     }
     
     private void compareClassifiers(){
+    	//best of the extra challengers takes newModel's place if it has the better G-mean
+    	if(!extraChallengers.isEmpty() && newModel != null){
+    		Challenger best = null;
+    		double bestGMean = getGMean(totalMinInst, newMinCorrect, totalMajInst, newMajCorrect);
+    		flushChallengers();
+    		for(Challenger c : extraChallengers){
+    			if(getGMean(totalMinInst, c.minCorrect, totalMajInst, c.majCorrect) > bestGMean){
+    				best = c;
+    				bestGMean = getGMean(totalMinInst, c.minCorrect, totalMajInst, c.majCorrect);
+    			}
+    		}
+    		if(best != null){
+    			Classifier temp = newModel;
+    			if(newModel == sharedModel){ //challengers train off-thread, so the pool's model is copied for it
+    				temp = sharedModel.copy();
+    				sharedModel = null;
+    				reuseCopiesAvoided--;
+    			}
+    			int tempMinCorrect = newMinCorrect;
+    			int tempMajCorrect = newMajCorrect;
+    			newModel = best.model;
+    			newModelKey = null;
+    			newMinCorrect = best.minCorrect;
+    			newMajCorrect = best.majCorrect;
+    			best.model = temp;
+    			best.minCorrect = tempMinCorrect;
+    			best.majCorrect = tempMajCorrect;
+    		}
+    	}
     	if(getGMean(totalMinInst, currMinCorrect, totalMajInst, currMajCorrect)  < getGMean(totalMinInst, newMinCorrect, totalMajInst, newMajCorrect)){
     		int tempMinCorrect = currMinCorrect;
     		int tempMajCorrect = currMajCorrect;
@@ -276,9 +653,13 @@ public class GCPF extends AbstractCPF{
     		Classifier temp = classifierCollection.get(currentClassifier);
     		classifierCollection.set(currentClassifier, newModel);
     		newModel = temp;
+    		String tempKey = conceptKeys.get(currentClassifier);
+    		conceptKeys.set(currentClassifier, newModelKey != null ? newModelKey : publisherId + ":" + currentClassifier);
+    		newModelKey = tempKey;
     		newMinCorrect = tempMinCorrect;
     		newMajCorrect = tempMajCorrect;
     		reuseFlag = reuseFlag * -1;
+    		if(useVoteCache) voteCache.invalidate(currentClassifier);
     	}
     }
     
@@ -292,29 +673,72 @@ public class GCPF extends AbstractCPF{
         
     	this.ddmLevel =  DDM_OUTCONTROL_LEVEL;
     	totalBufferInstances += buffer.size();
+    	int priorClassifier = currentClassifier;
+    	modelSizes.remove(priorClassifier);
     	currentClassifier = null;
     	
+    	if(sharedLibrary != null) syncSharedLibrary(priorClassifier);
+    	
     	//get results per model on this comparison window
     	ArrayList<BitSet> thisBufferResults = new ArrayList<BitSet>();
     	
     	//get indices of current models
     	ArrayList<Integer> currentModels = new ArrayList<Integer>();
     	for(int i = 0; i < classifierCollection.size(); i++){
-    		if(!(classifierCollection.get(i) == null))
+    		if(isLive(i))
     			currentModels.add(i);
     	}
     	
     	if(verbose) System.out.print(", buffer size:" + buffer.size());
     	
-    	for(int i = 0; i < currentModels.size(); i++){
-    		thisBufferResults.add(new BitSet(buffer.size()));
+    	//under latency pressure only every shedStride-th buffer instance is scored
+    	int stride = shedStride;
+    	int scoredSize = (buffer.size() + stride - 1) / stride;
+    	bufferInstancesShed += buffer.size() - scoredSize;
+    	
+    	//Naive Bayes pools can be scored across all models per instance, giving the same results
+    	ArrayList<Classifier> poolModels = null;
+    	if(vectorPoolScoringOption.isSet() && buffer.size() > 0){
+    		poolModels = new ArrayList<Classifier>();
+    		for(int i = 0; i < currentModels.size(); i++){
+    			Classifier model = getModel(currentModels.get(i));
+    			if(!NaiveBayesPoolScorer.supports(model)){
+    				poolModels = null;
+    				break;
+    			}
+    			poolModels.add(model);
+    		}
+    	}
+    	
+    	if(poolModels != null){
+    		for(int i = 0; i < currentModels.size(); i++)
+    			thisBufferResults.add(new BitSet(scoredSize));
+    		NaiveBayesPoolScorer scorer = new NaiveBayesPoolScorer(poolModels, buffer.get(0).numAttributes());
+    		boolean[] correct = new boolean[poolModels.size()];
+    		for(int j = 0; j < buffer.size(); j += stride){
+    			scorer.correctlyClassifies(buffer.get(j), correct);
+    			for(int i = 0; i < correct.length; i++)
+    				if(!correct[i]) thisBufferResults.get(i).set(j / stride);
+    		}
+    	}
+    	
+    	for(int i = 0; poolModels == null && i < currentModels.size(); i++){
+    		thisBufferResults.add(new BitSet(scoredSize));
+    		Classifier model = getModel(currentModels.get(i));
         	
-    		for(int j = 0; j < buffer.size(); j++){
-    			if (!((Classifier) classifierCollection.get(currentModels.get(i))).correctlyClassifies(buffer.get(j)))
-    				thisBufferResults.get(i).set(j);
+    		//votes of the prior model on buffered instances are unchanged since it has not trained on them
+    		double[] cachedVotes;
+    		for(int j = 0; j < buffer.size(); j += stride){
+    			if(useVoteCache && currentModels.get(i) == priorClassifier
+    					&& (cachedVotes = voteCache.get(priorClassifier, numberInstances - buffer.size() + 1 + j, buffer.get(j))) != null){
+    				if(Utils.maxIndex(cachedVotes) != (int) buffer.get(j).classValue())
+    					thisBufferResults.get(i).set(j / stride);
+    			} else if (!model.correctlyClassifies(buffer.get(j)))
+    				thisBufferResults.get(i).set(j / stride);
     		}
     	}
 	    
+    	BitSet difference = new BitSet(scoredSize);
     	for(int i = 0; i < currentModels.size(); i++){
     		for(int j = i + 1; j > i & j < currentModels.size(); j++){
     			
@@ -323,15 +747,23 @@ public class GCPF extends AbstractCPF{
     				modelComparisonMeasurements.get(currentModels.get(i)).put(currentModels.get(j), 
     						new Integer[]{0,0});
     			    			
-    			BitSet difference = (BitSet) thisBufferResults.get(j).clone();
+    			difference.clear();
+    			difference.or(thisBufferResults.get(j));
     			difference.xor(thisBufferResults.get(i)); 			
     			int seen_before = modelComparisonMeasurements.get(currentModels.get(i)).get(currentModels.get(j))[0];
     			int agreed_before = modelComparisonMeasurements.get(currentModels.get(i)).get(currentModels.get(j))[1];
-    			int seen_this_buffer = buffer.size();
-    			int agreed_this_buffer = buffer.size() - difference.cardinality();
+    			int seen_this_buffer = scoredSize;
+    			int agreed_this_buffer = scoredSize - difference.cardinality();
     			
     			modelComparisonMeasurements.get(currentModels.get(i)).get(currentModels.get(j))[0] = seen_before + seen_this_buffer;
     			modelComparisonMeasurements.get(currentModels.get(i)).get(currentModels.get(j))[1] = agreed_before + agreed_this_buffer;
+    			
+    			long pair = ((long) currentModels.get(i) << 32) | currentModels.get(j);
+    			if(seen_before + seen_this_buffer >= MIN_MERGE_OBSERVATIONS
+    					&& (double)(agreed_before + agreed_this_buffer)/(double)(seen_before + seen_this_buffer) >= similarityMargin)
+    				mergeCandidates.add(pair);
+    			else
+    				mergeCandidates.remove(pair);
     		}
     	}
     	
@@ -346,14 +778,41 @@ public class GCPF extends AbstractCPF{
     	
 		//add a new model to contend with existing models
     	//train it on even instances in buffer
-		newModel = ((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy();
+		newModel = learnerPrototype.copy();
 		newModel.prepareForUse();
+		newModelKey = null;
 		BitSet newModelResults = new BitSet(buffer.size());
 		
 		//Here we have a double buffer and will initialise a new model on all warning zone instances
 		//train new model
-		for(int i = 0; i < buffer.size(); i++){
-			newModel.trainOnInstance(buffer.get(i));
+		if(parallelBulkTrainOption.isSet()){
+			challengerInstancesShed += buffer.size() - (buffer.size() + stride - 1) / stride;
+			BulkTrainer.train(newModel, buffer, stride);
+		} else {
+			for(int i = 0; i < buffer.size(); i++){
+				if(stride > 1 && i % stride != 0) challengerInstancesShed++;
+				else newModel.trainOnInstance(buffer.get(i));
+			}
+		}
+		
+		//extra challengers use different seeds and each warm-starts on a later suffix of the buffer
+		for(Challenger c : extraChallengers) c.await();
+		extraChallengers.clear();
+		challengerBatch.clear(); //instances for the replaced challengers
+		for(int k = 1; k < numChallengers; k++){
+			Challenger c = new Challenger(learnerPrototype.copy());
+			c.model.setRandomSeed(k);
+			c.model.prepareForUse();
+			extraChallengers.add(c);
+		}
+		if(!extraChallengers.isEmpty()){
+			final Instances warmStart = buffer;
+			final int warmStride = stride;
+			runOnChallengers(c -> {
+				int start = extraChallengers.indexOf(c) + 1;
+				for(int i = start * warmStart.size() / numChallengers; i < warmStart.size(); i++)
+					if(warmStride == 1 || i % warmStride == 0) c.model.trainOnInstance(warmStart.get(i));
+			}, true);
 		}
 		
     	//check older models to find best accuracy on buffer
@@ -369,12 +828,26 @@ public class GCPF extends AbstractCPF{
     		}
     	}
 		
-		//Make copy of existing model to use
-		addModel(classifierCollection.get(currentModels.get(bestModelIndex)).copy());
+		//Share the existing model until it is first trained, when it is copied
+		modelLastUsed.put(currentModels.get(bestModelIndex), numDrifts);
+		Classifier reusedModel = getModel(currentModels.get(bestModelIndex));
+		addModel(reusedModel);
+		conceptKeys.set(currentClassifier, conceptKeys.get(currentModels.get(bestModelIndex)));
+		sharedModel = classifierCollection.get(currentModels.get(bestModelIndex)) == reusedModel ? reusedModel : null; //cold models are read as a fresh copy
+		if(sharedModel != null) reuseCopiesAvoided++;
+		CPFEvents.ModelReuse reuseEvent = new CPFEvents.ModelReuse();
+		if(reuseEvent.shouldCommit()){
+			reuseEvent.reusedModel = currentModels.get(bestModelIndex);
+			reuseEvent.newModel = currentClassifier;
+			reuseEvent.bufferAccuracy = maxAcc;
+			reuseEvent.commit();
+		}
 		currentModels.add(currentClassifier);
 
     	if (this.fadeModels) fadeModels(currentModels);
+    	if (this.poolMemoryBudget > 0) enforceMemoryBudget();
     	buffer.delete();
+    	voteCache.clear();
     	
     	this.maxModels = Math.max(this.currentModels, this.maxModels);
     	if(verbose) System.out.println("Model selected: " + currentClassifier);
@@ -390,44 +863,46 @@ public class GCPF extends AbstractCPF{
     }
 
     //If a model acts the same way as another model similarityMargin proportion of the time, 
-    //keep the model with higher accuracy. The kept model gets fade points
+    //keep the model with higher accuracy. The kept model gets fade points.
+    //Only pairs in mergeCandidates are visited, in the same (modelA, modelB) order as a full scan
 	private ArrayList<Integer> mergeModels(ArrayList<Integer> currentModels){
 		int modelToRemove;
 		int modelToKeep;
+		int skipModel = -1; //a full scan skips the model after one removed as modelA
 		
 		ArrayList<Integer> removedModels = new ArrayList<Integer>();
-		for(int i = 0; i < currentModels.size(); i++){
-			int modelA = currentModels.get(i);
-			if(classifierCollection.get(modelA) == null) continue;
-			for(int j = i + 1; j < currentModels.size(); j++){
-				int modelB = currentModels.get(j);
-				if(classifierCollection.get(modelB) == null) continue;
-				if((double)(modelComparisonMeasurements.get(modelA).get(modelB)[1])/(double)(modelComparisonMeasurements.get(modelA).get(modelB)[0]) >= similarityMargin
-						&& modelComparisonMeasurements.get(modelA).get(modelB)[0] >= 60){
-					modelMerges++;
-					if(getGMean(modelAccuracyMeasurements.get(modelA)[0], modelAccuracyMeasurements.get(modelA)[1], modelAccuracyMeasurements.get(modelA)[2], modelAccuracyMeasurements.get(modelA)[3]) >=
-							getGMean(modelAccuracyMeasurements.get(modelB)[0], modelAccuracyMeasurements.get(modelB)[1], modelAccuracyMeasurements.get(modelB)[2], modelAccuracyMeasurements.get(modelB)[3])){
-						modelToRemove = modelB;
-						modelToKeep = modelA;
-					} else {
-						modelToRemove = modelA;
-						modelToKeep = modelB;
-					}
-					
-					if(verbose) System.out.println("Model " + modelToRemove + " merged with model " + modelToKeep);
-					classifierDestination.set(modelToRemove, Integer.toString(modelToKeep));
-					stringReplace(Integer.toString(modelToRemove), Integer.toString(modelToKeep), classifierDestination);
-					removeModel(modelToRemove);
-					removedModels.add(modelToRemove);
-					if(fadeModels){
-						modelFadeScores.put(modelToKeep, modelFadeScores.get(modelToKeep) + ((modelFadeScores.get(modelToRemove) == null) ? 0 : modelFadeScores.get(modelToRemove)));
-						modelFadeScores.put(modelToRemove, null);
-					}
-					if(modelToRemove == currentModels.get(i)){ 
-						i++;
-						break;
-					}
-				}
+		for(long pair : new ArrayList<Long>(mergeCandidates)){
+			int modelA = (int) (pair >>> 32);
+			int modelB = (int) pair;
+			if(modelA == skipModel || !isLive(modelA) || !isLive(modelB)) continue;
+			modelMerges++;
+			if(getGMean(modelAccuracyMeasurements.get(modelA)[0], modelAccuracyMeasurements.get(modelA)[1], modelAccuracyMeasurements.get(modelA)[2], modelAccuracyMeasurements.get(modelA)[3]) >=
+					getGMean(modelAccuracyMeasurements.get(modelB)[0], modelAccuracyMeasurements.get(modelB)[1], modelAccuracyMeasurements.get(modelB)[2], modelAccuracyMeasurements.get(modelB)[3])){
+				modelToRemove = modelB;
+				modelToKeep = modelA;
+			} else {
+				modelToRemove = modelA;
+				modelToKeep = modelB;
+			}
+			
+			if(verbose) System.out.println("Model " + modelToRemove + " merged with model " + modelToKeep);
+			CPFEvents.ModelMerge mergeEvent = new CPFEvents.ModelMerge();
+			if(mergeEvent.shouldCommit()){
+				mergeEvent.keptModel = modelToKeep;
+				mergeEvent.removedModel = modelToRemove;
+				mergeEvent.commit();
+			}
+			classifierDestination.set(modelToRemove, Integer.toString(modelToKeep));
+			stringReplace(Integer.toString(modelToRemove), Integer.toString(modelToKeep), classifierDestination);
+			removeModel(modelToRemove);
+			removedModels.add(modelToRemove);
+			if(fadeModels){
+				modelFadeScores.put(modelToKeep, modelFadeScores.get(modelToKeep) + ((modelFadeScores.get(modelToRemove) == null) ? 0 : modelFadeScores.get(modelToRemove)));
+				modelFadeScores.put(modelToRemove, null);
+			}
+			if(modelToRemove == modelA){ 
+				int i = currentModels.indexOf(modelA);
+				skipModel = i + 1 < currentModels.size() ? currentModels.get(i + 1) : -1;
 			}
 		}
 		return removedModels;
@@ -435,12 +910,35 @@ public class GCPF extends AbstractCPF{
 	
 	private void removeModel(int modelToRemove){
 		this.currentModels = this.currentModels - 1;
-		if(trackConceptSim)this.removedClassifierCollection.add(classifierCollection.get(modelToRemove));
+		if(useFingerprints) writeFingerprint(modelToRemove);
+		else if(trackConceptSim)this.removedClassifierCollection.add(getModel(modelToRemove));
 		classifierCollection.set(modelToRemove, null);
+		modelSizes.remove(modelToRemove);
+		for(Long pair : new ArrayList<Long>(mergeCandidates))
+			if((int) (pair >>> 32) == modelToRemove || (int) (long) pair == modelToRemove) mergeCandidates.remove(pair);
+		modelLastUsed.remove(modelToRemove);
+		File cold = coldModels.remove(modelToRemove);
+		if(cold != null) cold.delete();
 		modelComparisonMeasurements.set(modelToRemove,null);
 		modelAccuracyMeasurements.set(modelToRemove,null);
 	}
 	
+	private void writeFingerprint(int model){
+		try {
+			getFingerprintFile().append(ConceptFingerprintFile.fingerprint(model, getModel(model), probes,
+					classifierStart.get(model), numberInstances, classifierDestination.get(model), modelAccuracyMeasurements.get(model)));
+		} catch (IOException e) {
+			if(verbose) System.out.println("Could not write fingerprint for model " + model + ": " + e.getMessage());
+		}
+	}
+	
+	//Fingerprint file of removed models, or null when fingerprints are not kept
+	public ConceptFingerprintFile getFingerprintFile(){
+		if(useFingerprints && this.fingerprintFile == null)
+			this.fingerprintFile = new ConceptFingerprintFile(new File(fingerprintFileOption.getValue()));
+		return this.fingerprintFile;
+	}
+	
 	private void fadeModels(ArrayList<Integer> currentModels){
 		int score_to_add = fadePoints;
     	for(int i:currentModels){
@@ -451,17 +949,193 @@ public class GCPF extends AbstractCPF{
     			modelFadeScores.put(i, modelFadeScores.get(i) - 1);
     			if(modelFadeScores.get(i) == 0){
     				if(verbose) System.out.println("Model " + i + " faded");
+    				CPFEvents.ModelFade fadeEvent = new CPFEvents.ModelFade();
+    				if(fadeEvent.shouldCommit()){
+    					fadeEvent.model = i;
+    					fadeEvent.commit();
+    				}
+    				classifierDestination.set(i, "F");
     				removeModel(i);
     				this.modelsFaded++;
-    				classifierDestination.set(i, "F");
     			}
     		}
     	}
 	}
 
+	//Publishes the model that has just finished its concept as a new version of that concept, then
+	//takes concepts published by other processes: a newer version of a concept already in the pool
+	//replaces it in place, and other concepts join the pool as reuse candidates for the buffer
+	private void syncSharedLibrary(int priorClassifier){
+		try {
+			String priorKey = conceptKeys.get(priorClassifier);
+			conceptVersions.put(priorKey, sharedLibrary.publish(publisherId, priorKey,
+					modelAccuracyMeasurements.get(priorClassifier), classifierCollection.get(priorClassifier)));
+		} catch (SharedConceptLibrary.LibraryFullException e) {
+			if(this.publishesFailed++ == 0 && verbose) System.out.println(e.getMessage() + "; concepts are no longer published");
+		} catch (IOException e) {
+			if(verbose) System.out.println("Shared concept library unavailable: " + e.getMessage());
+		}
+		
+		try {
+			for(SharedConceptLibrary.Entry entry : sharedLibrary.readNew(publisherId)){
+				Long heldVersion = conceptVersions.get(entry.concept);
+				if(heldVersion != null && heldVersion >= entry.version) continue;
+				conceptVersions.put(entry.concept, entry.version);
+				
+				int slot = conceptKeys.lastIndexOf(entry.concept);
+				while(slot >= 0 && !isLive(slot)) slot = conceptKeys.subList(0, slot).lastIndexOf(entry.concept);
+				if(slot >= 0){
+					//newer version of a concept in the pool
+					File cold = coldModels.remove(slot);
+					if(cold != null) cold.delete();
+					classifierCollection.set(slot, entry.model);
+					modelSizes.remove(slot);
+					modelAccuracyMeasurements.set(slot, entry.accuracy);
+				} else {
+					addModel(entry.model);
+					conceptKeys.set(currentClassifier, entry.concept);
+					modelAccuracyMeasurements.set(currentClassifier, entry.accuracy);
+					if(fadeModels) modelFadeScores.put(currentClassifier, fadePoints);
+					currentClassifier = null;
+					this.modelsImported++;
+				}
+				if(verbose) System.out.println("Imported concept " + entry.concept + " version " + entry.version);
+			}
+		} catch (IOException e) {
+			if(verbose) System.out.println("Shared concept library unavailable: " + e.getMessage());
+		}
+	}
+	
+	//Drifts at which the model could not be published because the library was full of current concepts
+	public int getPublishesFailed(){
+		return this.publishesFailed;
+	}
+	
+	//Reused models that were replaced before they trained, so were never copied
+	public int getReuseCopiesAvoided(){
+		return sharedModel == null ? this.reuseCopiesAvoided : this.reuseCopiesAvoided - 1;
+	}
+	
+	public int getChallengerInstancesShed(){
+		return this.challengerInstancesShed;
+	}
+	
+	public int getBufferInstancesShed(){
+		return this.bufferInstancesShed;
+	}
+	
+	public int getCompareCyclesShed(){
+		return this.compareCyclesShed;
+	}
+	
+	//Mean latency of instances other than drift resolutions, which shedding is driven by
+	public double getMeanLatencyMicros(){
+		return this.meanLatencyNanos / 1000.0;
+	}
+	
+	public double getDriftLatencyMicros(){
+		return this.driftLatencyNanos / 1000.0;
+	}
+	
+	public int getModelsImported(){
+		return this.modelsImported;
+	}
+	
+	//A model is live if it is held in memory or has been demoted to cold storage
+	private boolean isLive(int slot){
+		return classifierCollection.get(slot) != null || coldModels.containsKey(slot);
+	}
+	
+	//Returns the model in a slot, reading it back from disk if it is in cold storage
+	private Classifier getModel(int slot){
+		if(classifierCollection.get(slot) != null || !coldModels.containsKey(slot))
+			return classifierCollection.get(slot);
+		try(ObjectInputStream in = new ObjectInputStream(new FileInputStream(coldModels.get(slot)))){
+			return (Classifier) in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new RuntimeException("Could not read model " + slot + " from cold storage", e);
+		}
+	}
+	
+	//True for the pool slot a reused current model is still shared with. Its bytes are counted
+	//with the current slot, and evicting or demoting it would free nothing
+	private boolean sharesCurrentModel(int slot){
+		return sharedModel != null && slot != currentClassifier && classifierCollection.get(slot) == sharedModel;
+	}
+	
+	//While in-memory models exceed the budget, evict or demote the model with the lowest
+	//benefit per byte, where benefit is its G-mean discounted by drifts since it was last used
+	private void enforceMemoryBudget(){
+		long poolBytes = 0;
+		for(int i = 0; i < classifierCollection.size(); i++){
+			if(classifierCollection.get(i) == null || sharesCurrentModel(i)) continue;
+			if(modelSizes.get(i) == null) modelSizes.put(i, (long) classifierCollection.get(i).measureByteSize());
+			poolBytes += modelSizes.get(i);
+		}
+		
+		while(poolBytes > poolMemoryBudget){
+			int worstModel = -1;
+			double worstScore = Double.MAX_VALUE;
+			for(int i = 0; i < classifierCollection.size(); i++){
+				if(classifierCollection.get(i) == null || i == currentClassifier || sharesCurrentModel(i)) continue;
+				Integer[] acc = modelAccuracyMeasurements.get(i);
+				int lastUsed = modelLastUsed.get(i) == null ? 0 : modelLastUsed.get(i);
+				double benefit = getGMean(acc[0], acc[1], acc[2], acc[3]) / (1.0 + numDrifts - lastUsed);
+				double score = benefit / Math.max(1L, modelSizes.get(i));
+				if(score < worstScore){
+					worstScore = score;
+					worstModel = i;
+				}
+			}
+			if(worstModel < 0) break; //only the current model is left in memory
+			
+			poolBytes -= modelSizes.get(worstModel);
+			if(coldStorage && demoteModel(worstModel)){
+				if(verbose) System.out.println("Model " + worstModel + " demoted to cold storage");
+				this.modelsDemoted++;
+			} else {
+				if(verbose) System.out.println("Model " + worstModel + " evicted");
+				classifierDestination.set(worstModel, "E");
+				removeModel(worstModel);
+				this.modelsEvicted++;
+				if(fadeModels) modelFadeScores.put(worstModel, null);
+			}
+		}
+	}
+	
+	//Cold files are deleted by removeModel and resetLearningImpl rather than deleteOnExit,
+	//which would hold every path ever demoted in memory until the JVM exits
+	private boolean demoteModel(int slot){
+		File f = null;
+		try{
+			f = File.createTempFile("gcpf-model-" + slot + "-", ".ser");
+			try(ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(f))){
+				out.writeObject(classifierCollection.get(slot));
+			}
+			coldModels.put(slot, f);
+			classifierCollection.set(slot, null);
+			modelSizes.remove(slot);
+			return true;
+		} catch (IOException e) {
+			if(f != null) f.delete();
+			if(verbose) System.out.println("Could not demote model " + slot + ": " + e.getMessage());
+			return false;
+		}
+	}
+	
+	public int getModelsEvicted(){
+		return this.modelsEvicted;
+	}
+	
+	public int getModelsDemoted(){
+		return this.modelsDemoted;
+	}
+
 	@Override
     public double[] getVotesForInstance(Instance inst) {
-        return this.classifierCollection.get(currentClassifier).getVotesForInstance(inst);
+		//test step comes before training, so this instance will be numbered numberInstances + 1
+		if(featureHasher != null) inst = featureHasher.hash(inst);
+        return getCurrentVotes(inst, numberInstances + 1);
     }
 	
 	public boolean getWarning(){
@@ -481,6 +1155,10 @@ public class GCPF extends AbstractCPF{
 	
     //Find optimal G-mean point in scoretree by iterating through scores
 	void getNewBoundary(){
+		if(windowScoreEval){
+			decisionBoundary = windowScores.getBoundary();
+			return;
+		}
 		TreeSet<Score> sortedScores = eval.getAucEstimator().getScoreTree();
 		double numPos = eval.getAucEstimator().getPos();
 		double numNeg = eval.getAucEstimator().getNeg();
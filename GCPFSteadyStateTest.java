@@ -0,0 +1,156 @@
+/*
+ * GCPFSteadyStateTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
+import moa.core.FastVector;
+import moa.core.Measurement;
+
+//Checks the in-control prequential path of GCPF and GAD with windowScoreEval allocates nothing per
+//instance, and that the primitive score window finds the same boundary as RobWindowAUC
+public class GCPFSteadyStateTest {
+
+	static final int WARMUP = 100000;
+	static final int MEASURED = 100000;
+
+	//Predicts the true class from preallocated vote arrays, so the base learner itself allocates nothing
+	static class OracleLearner extends AbstractClassifier {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] minorityVotes = {0.1, 0.9};
+		private final double[] majorityVotes = {0.9, 0.1};
+
+		@Override
+		public double[] getVotesForInstance(Instance inst){
+			return inst.classValue() == 1 ? minorityVotes : majorityVotes;
+		}
+
+		@Override
+		public void resetLearningImpl(){}
+
+		@Override
+		public void trainOnInstanceImpl(Instance inst){}
+
+		@Override
+		protected Measurement[] getModelMeasurementsImpl(){
+			return null;
+		}
+
+		@Override
+		public void getModelDescription(StringBuilder out, int indent){}
+
+		@Override
+		public boolean isRandomizable(){
+			return false;
+		}
+	}
+
+	@Test
+	public void gcpfInControlPathDoesNotAllocate(){
+		GCPF gcpf = new GCPF();
+		gcpf.baseLearnerOption.setCurrentObject(new OracleLearner());
+		gcpf.windowScoreEvalOption.set();
+		gcpf.prepareForUse();
+		assertEquals(0, bytesPerInstance(gcpf));
+	}
+
+	@Test
+	public void gadInControlPathDoesNotAllocate(){
+		GAD gad = new GAD();
+		gad.baseLearnerOption.setCurrentObject(new OracleLearner());
+		gad.windowScoreEvalOption.set();
+		gad.prepareForUse();
+		assertEquals(0, bytesPerInstance(gad));
+	}
+
+	@Test
+	public void windowScoresMatchRobWindowAUCBoundary(){
+		GCPF gcpf = new GCPF();
+		gcpf.prepareForUse();
+		Instances header = header();
+		Random random = new Random(1);
+
+		//more results than the window holds, tied scores and some zero weight instances
+		for(int i = 0; i < 3 * gcpf.eval.widthOption.getValue(); i++){
+			Instance inst = instance(header, random.nextInt(5) == 0 ? 1 : 0);
+			if(random.nextInt(20) == 0) inst.setWeight(0);
+			double score = Math.round(random.nextDouble() * 10) / 10.0;
+			double[] votes = {1 - score, score};
+			gcpf.evalExample.instance = inst;
+			gcpf.eval.addResult(gcpf.evalExample, votes);
+			gcpf.windowScores.addResult(votes, inst.classValue() == 1, inst.weight());
+		}
+
+		gcpf.windowScoreEval = false;
+		gcpf.getNewBoundary();
+		double treeBoundary = gcpf.decisionBoundary;
+		gcpf.windowScoreEval = true;
+		gcpf.getNewBoundary();
+		assertEquals(treeBoundary, gcpf.decisionBoundary, 0.0);
+	}
+
+	//Mean bytes allocated per trained instance after warm-up; any per-instance allocation is at least 16
+	private static long bytesPerInstance(Classifier learner){
+		Instances header = header();
+		Instance[] stream = new Instance[1000];
+		for(int i = 0; i < stream.length; i++)
+			stream[i] = instance(header, i % 10 == 0 ? 1 : 0); //minority first, so no comparison cycles run
+
+		for(int i = 0; i < WARMUP; i++) learner.trainOnInstance(stream[i % stream.length]);
+		long before = allocatedBytes();
+		for(int i = 0; i < MEASURED; i++) learner.trainOnInstance(stream[i % stream.length]);
+		return (allocatedBytes() - before) / MEASURED;
+	}
+
+	private static long allocatedBytes(){
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	private static Instances header(){
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x"));
+		attributes.addElement(new Attribute("class", Arrays.asList("0", "1")));
+		InstancesHeader header = new InstancesHeader(new Instances("steadyState", attributes, 0));
+		header.setClassIndex(1);
+		return header;
+	}
+
+	private static Instance instance(Instances header, int classValue){
+		Instance inst = new DenseInstance(1.0, new double[]{classValue, classValue});
+		inst.setDataset(header);
+		return inst;
+	}
+}
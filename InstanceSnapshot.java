@@ -0,0 +1,63 @@
+/*
+ * InstanceSnapshot.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.Serializable;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+//Weight and stored values of an instance, class included, so a cache keyed by instance identity can tell
+//when a stream has mutated and reused the same object. Checking costs one pass over the stored values
+class InstanceSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private double weight;
+	private int numValues = 0;
+	private int[] indices = new int[0];
+	private long[] valueBits = new long[0];
+
+	InstanceSnapshot(){}
+
+	InstanceSnapshot(Instance inst){
+		set(inst);
+	}
+
+	//Records inst, reusing the arrays when they are large enough
+	void set(Instance inst){
+		weight = inst.weight();
+		numValues = inst.numValues();
+		if(indices.length < numValues){
+			indices = new int[numValues];
+			valueBits = new long[numValues];
+		}
+		for(int i = 0; i < numValues; i++){
+			indices[i] = inst.index(i);
+			valueBits[i] = Double.doubleToLongBits(inst.valueSparse(i));
+		}
+	}
+
+	boolean matches(Instance inst){
+		if(inst.weight() != weight || inst.numValues() != numValues) return false;
+		for(int i = 0; i < numValues; i++)
+			if(inst.index(i) != indices[i] || Double.doubleToLongBits(inst.valueSparse(i)) != valueBits[i]) return false;
+		return true;
+	}
+}
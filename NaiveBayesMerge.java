@@ -0,0 +1,58 @@
+/*
+ * NaiveBayesMerge.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.bayes;
+
+import moa.classifiers.Classifier;
+import moa.classifiers.TrainingWeight;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserverMerge;
+
+//Merges the sufficient statistics of NaiveBayes models trained on disjoint parts of a stream
+public class NaiveBayesMerge {
+
+	//True for plain NaiveBayes; subclasses may keep state this does not know how to merge
+	public static boolean canMerge(Classifier c){
+		return c.getClass() == NaiveBayes.class;
+	}
+
+	//True if every attribute observer of the model has mergeable statistics
+	public static boolean hasMergeableObservers(Classifier c){
+		NaiveBayes nb = (NaiveBayes) c;
+		for(int i = 0; i < nb.attributeObservers.size(); i++){
+			AttributeClassObserver obs = nb.attributeObservers.get(i);
+			if(obs != null && !AttributeClassObserverMerge.canMerge(obs)) return false;
+		}
+		return true;
+	}
+
+	//Adds partial's statistics into target. partial must not be used afterwards, its observers may be taken over
+	public static void merge(Classifier target, Classifier partial){
+		NaiveBayes t = (NaiveBayes) target;
+		NaiveBayes p = (NaiveBayes) partial;
+		t.observedClassDistribution.addValues(p.observedClassDistribution);
+		TrainingWeight.add(t, TrainingWeight.get(p));
+		for(int i = 0; i < p.attributeObservers.size(); i++){
+			AttributeClassObserver obs = p.attributeObservers.get(i);
+			if(obs == null) continue;
+			if(t.attributeObservers.get(i) == null) t.attributeObservers.set(i, obs);
+			else AttributeClassObserverMerge.merge(t.attributeObservers.get(i), obs);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * NaiveBayesPoolKernel.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.bayes;
+
+//Lane loops of NaiveBayesPoolScorer, one lane per model. Implementations must give bit identical results
+interface NaiveBayesPoolKernel {
+
+	//out = -((x - mean) * (x - mean) / denom)
+	void gaussianArgs(double x, double[] mean, double[] denom, double[] out, int n);
+
+	//out = a * b
+	void mul(double[] a, double[] b, double[] out, int n);
+
+	//out = (counts + 1.0) / denom
+	void nominal(double[] counts, double[] denom, double[] out, int n);
+
+	//votes[offset + i] *= factors[i]
+	void scale(double[] votes, int offset, double[] factors, int n);
+
+	NaiveBayesPoolKernel SCALAR = new NaiveBayesPoolKernel(){
+
+		@Override
+		public void gaussianArgs(double x, double[] mean, double[] denom, double[] out, int n){
+			for(int i = 0; i < n; i++){
+				double diff = x - mean[i];
+				out[i] = -(diff * diff / denom[i]);
+			}
+		}
+
+		@Override
+		public void mul(double[] a, double[] b, double[] out, int n){
+			for(int i = 0; i < n; i++) out[i] = a[i] * b[i];
+		}
+
+		@Override
+		public void nominal(double[] counts, double[] denom, double[] out, int n){
+			for(int i = 0; i < n; i++) out[i] = (counts[i] + 1.0) / denom[i];
+		}
+
+		@Override
+		public void scale(double[] votes, int offset, double[] factors, int n){
+			for(int i = 0; i < n; i++) votes[offset + i] *= factors[i];
+		}
+	};
+}
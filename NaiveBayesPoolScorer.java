@@ -0,0 +1,229 @@
+/*
+ * NaiveBayesPoolScorer.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.bayes;
+
+import java.util.List;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import moa.classifiers.Classifier;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.ObserverStatistics;
+import moa.core.DoubleVector;
+import moa.core.GaussianEstimator;
+
+/*
+ * Scores one instance against a pool of NaiveBayes models at once. The models' priors and per
+ * class/attribute estimator parameters are copied into primitive arrays with one lane per model, and
+ * the likelihood product is evaluated lane by lane with the Vector API when jdk.incubator.vector and
+ * the separately compiled NaiveBayesPoolVectorKernel are available, or with scalar loops otherwise.
+ *
+ * Each lane repeats NaiveBayes.doNaiveBayesPrediction's floating point operations in the same order,
+ * with Math.exp still evaluated per lane, so correctlyClassifies gives exactly the answer of the
+ * models' own correctlyClassifies. The layout is a snapshot and must be rebuilt once any model trains.
+ */
+public class NaiveBayesPoolScorer {
+
+	static final int IDENTITY = 0; //no observer for the attribute, factor 1
+	static final int ZERO = 1; //class never observed for the attribute, factor 0
+	static final int GAUSSIAN = 2;
+	static final int DEGENERATE = 3; //Gaussian with zero deviation
+	static final int NOMINAL = 4;
+
+	//null unless the incubator module is present and the vector kernel was compiled
+	static final NaiveBayesPoolKernel VECTOR_KERNEL = loadVectorKernel();
+
+	private final int numModels;
+	private final int numClasses;
+	private final int numAtts; //model attributes, i.e. excluding the class
+
+	private final double[] priors; //[c * numModels + m], -Infinity where model m has no class c
+	private final int[][] kinds; //[c * numAtts + a][m]
+	private final boolean[] hasGaussian; //[c * numAtts + a]
+	private final double[][] means; //Gaussian mean
+	private final double[][] coefs; //Gaussian 1 / (NORMAL_CONSTANT * stdDev)
+	private final double[][] denoms; //Gaussian 2 * stdDev * stdDev, nominal sumOfValues + numValues
+	private final double[][][] counts; //nominal value counts [c * numAtts + a][m]
+
+	private NaiveBayesPoolKernel kernel = VECTOR_KERNEL != null ? VECTOR_KERNEL : NaiveBayesPoolKernel.SCALAR;
+
+	//scratch, so scoring allocates nothing
+	private final double[] votes;
+	private final double[] factors;
+	private final double[] scratch;
+
+	//True if the model is a plain NaiveBayes whose observers this scorer can lay out
+	public static boolean supports(Classifier c){
+		if(!NaiveBayesMerge.canMerge(c)) return false;
+		NaiveBayes nb = (NaiveBayes) c;
+		for(int i = 0; i < nb.attributeObservers.size(); i++){
+			AttributeClassObserver obs = nb.attributeObservers.get(i);
+			if(obs != null && obs.getClass() != GaussianNumericAttributeClassObserver.class
+					&& obs.getClass() != NominalAttributeClassObserver.class) return false;
+		}
+		return true;
+	}
+
+	//All models must satisfy supports(); numAttributes is the instance width including the class
+	public NaiveBayesPoolScorer(List<Classifier> models, int numAttributes){
+		this.numModels = models.size();
+		this.numAtts = numAttributes - 1;
+		int classes = 0;
+		for(Classifier c : models)
+			classes = Math.max(classes, ((NaiveBayes) c).observedClassDistribution.numValues());
+		this.numClasses = classes;
+
+		priors = new double[numClasses * numModels];
+		kinds = new int[numClasses * numAtts][numModels];
+		hasGaussian = new boolean[numClasses * numAtts];
+		means = new double[numClasses * numAtts][numModels];
+		coefs = new double[numClasses * numAtts][numModels];
+		denoms = new double[numClasses * numAtts][numModels];
+		counts = new double[numClasses * numAtts][numModels][];
+
+		for(int m = 0; m < numModels; m++){
+			NaiveBayes nb = (NaiveBayes) models.get(m);
+			DoubleVector classDist = nb.observedClassDistribution;
+			double observedClassSum = classDist.sumOfValues();
+			for(int c = 0; c < numClasses; c++){
+				priors[c * numModels + m] = c < classDist.numValues() ? classDist.getValue(c) / observedClassSum : Double.NEGATIVE_INFINITY;
+				for(int a = 0; a < numAtts; a++)
+					layout(c * numAtts + a, m, nb.attributeObservers.get(a), c);
+			}
+		}
+
+		votes = new double[numClasses * numModels];
+		factors = new double[numModels];
+		scratch = new double[numModels];
+	}
+
+	private void layout(int k, int m, AttributeClassObserver obs, int c){
+		if(obs == null){
+			kinds[k][m] = IDENTITY;
+		} else if(obs instanceof GaussianNumericAttributeClassObserver){
+			GaussianEstimator est = ObserverStatistics.getEstimator((GaussianNumericAttributeClassObserver) obs, c);
+			if(est == null || !(est.getTotalWeightObserved() > 0.0)){
+				kinds[k][m] = ZERO;
+			} else {
+				double stdDev = est.getStdDev();
+				means[k][m] = est.getMean();
+				if(stdDev > 0.0){
+					kinds[k][m] = GAUSSIAN;
+					coefs[k][m] = 1.0 / (GaussianEstimator.NORMAL_CONSTANT * stdDev);
+					denoms[k][m] = 2.0 * stdDev * stdDev;
+					hasGaussian[k] = true;
+				} else {
+					kinds[k][m] = DEGENERATE;
+					denoms[k][m] = 1.0; //keeps the unused lane finite
+				}
+			}
+		} else {
+			DoubleVector dist = ObserverStatistics.getCounts((NominalAttributeClassObserver) obs, c);
+			if(dist == null){
+				kinds[k][m] = ZERO;
+			} else {
+				kinds[k][m] = NOMINAL;
+				counts[k][m] = dist.getArrayCopy();
+				denoms[k][m] = dist.sumOfValues() + dist.numValues();
+			}
+		}
+	}
+
+	//Sets correct[m] to whether model m predicts the instance's class
+	public void correctlyClassifies(Instance inst, boolean[] correct){
+		System.arraycopy(priors, 0, votes, 0, priors.length);
+		int classIndex = inst.classIndex();
+		for(int c = 0; c < numClasses; c++){
+			for(int a = 0; a < numAtts; a++){
+				int instAttIndex = classIndex > a ? a : a + 1;
+				if(inst.isMissing(instAttIndex)) continue;
+				computeFactors(c * numAtts + a, inst.value(instAttIndex));
+				kernel.scale(votes, c * numModels, factors, numModels);
+			}
+		}
+
+		//as Utils.maxIndex over each model's votes
+		int trueClass = (int) inst.classValue();
+		for(int m = 0; m < numModels; m++){
+			int maxIndex = 0;
+			double maximum = 0;
+			for(int c = 0; c < numClasses; c++){
+				if(c == 0 || votes[c * numModels + m] > maximum){
+					maxIndex = c;
+					maximum = votes[c * numModels + m];
+				}
+			}
+			correct[m] = maxIndex == trueClass;
+		}
+	}
+
+	//Scores with the vector kernel when true and it is available, otherwise with scalar loops
+	public void setUseVector(boolean useVector){
+		this.kernel = useVector && VECTOR_KERNEL != null ? VECTOR_KERNEL : NaiveBayesPoolKernel.SCALAR;
+	}
+
+	public static boolean isVectorAvailable(){
+		return VECTOR_KERNEL != null;
+	}
+
+	private static NaiveBayesPoolKernel loadVectorKernel(){
+		if(!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return null;
+		try {
+			return (NaiveBayesPoolKernel) Class.forName("moa.classifiers.bayes.NaiveBayesPoolVectorKernel")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	//Fills factors with each model's likelihood of value x for class/attribute slot k
+	private void computeFactors(int k, double x){
+		int[] kind = kinds[k];
+		if(hasGaussian[k]){
+			kernel.gaussianArgs(x, means[k], denoms[k], scratch, numModels);
+			for(int m = 0; m < numModels; m++)
+				scratch[m] = kind[m] == GAUSSIAN ? Math.exp(scratch[m]) : 0.0;
+			kernel.mul(coefs[k], scratch, factors, numModels);
+		} else {
+			for(int m = 0; m < numModels; m++) scratch[m] = countAt(k, m, x);
+			kernel.nominal(scratch, denoms[k], factors, numModels);
+		}
+
+		for(int m = 0; m < numModels; m++){
+			switch(kind[m]){
+				case IDENTITY: factors[m] = 1.0; break;
+				case ZERO: factors[m] = 0.0; break;
+				case DEGENERATE: factors[m] = x == means[k][m] ? 1.0 : 0.0; break;
+				case NOMINAL:
+					if(hasGaussian[k]) factors[m] = (countAt(k, m, x) + 1.0) / denoms[k][m];
+					break;
+				default: break;
+			}
+		}
+	}
+
+	private double countAt(int k, int m, double x){
+		double[] cnt = counts[k][m];
+		int v = (int) x;
+		return cnt != null && v >= 0 && v < cnt.length ? cnt[v] : 0.0;
+	}
+}
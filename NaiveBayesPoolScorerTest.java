@@ -0,0 +1,114 @@
+/*
+ * NaiveBayesPoolScorerTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.bayes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import moa.classifiers.Classifier;
+import moa.core.FastVector;
+
+//Checks the pool scorer, on both kernels, agrees with each model's own correctlyClassifies
+public class NaiveBayesPoolScorerTest {
+
+	static final int NUM_CLASSES = 3;
+
+	@Test
+	public void scalarMatchesCorrectlyClassifies(){
+		checkParity(false);
+	}
+
+	@Test
+	public void vectorMatchesCorrectlyClassifies(){
+		checkParity(true); //scalar again when the vector kernel is unavailable
+	}
+
+	private void checkParity(boolean useVector){
+		Instances header = header();
+		Random random = new Random(7);
+		List<Classifier> pool = pool(header, random);
+		for(Classifier model : pool) assertTrue(NaiveBayesPoolScorer.supports(model));
+
+		NaiveBayesPoolScorer scorer = new NaiveBayesPoolScorer(pool, header.numAttributes());
+		scorer.setUseVector(useVector);
+		boolean[] correct = new boolean[pool.size()];
+		for(int i = 0; i < 2000; i++){
+			Instance inst = instance(header, random, random.nextInt(NUM_CLASSES), true);
+			scorer.correctlyClassifies(inst, correct);
+			for(int m = 0; m < pool.size(); m++)
+				assertEquals("model " + m + " on " + inst, pool.get(m).correctlyClassifies(inst), correct[m]);
+		}
+	}
+
+	//Untrained, fully trained, missing a class, degenerate and barely trained models. More models
+	//than a vector holds, so both full lanes and the scalar tail are exercised
+	private static List<Classifier> pool(Instances header, Random random){
+		List<Classifier> pool = new ArrayList<Classifier>();
+		for(int m = 0; m < 11; m++){
+			NaiveBayes nb = new NaiveBayes();
+			nb.prepareForUse();
+			int trainingSize = new int[]{0, 500, 3}[m % 3];
+			for(int i = 0; i < trainingSize; i++){
+				int classValue = m % 4 == 1 ? random.nextInt(NUM_CLASSES - 1) : random.nextInt(NUM_CLASSES);
+				Instance inst = instance(header, random, classValue, m % 5 == 2);
+				if(m % 4 == 3) inst.setValue(1, classValue); //zero deviation per class
+				nb.trainOnInstance(inst);
+			}
+			pool.add(nb);
+		}
+		return pool;
+	}
+
+	private static Instances header(){
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x0"));
+		attributes.addElement(new Attribute("x1"));
+		attributes.addElement(new Attribute("colour", Arrays.asList("red", "green", "blue")));
+		attributes.addElement(new Attribute("class", Arrays.asList("a", "b", "c")));
+		InstancesHeader header = new InstancesHeader(new Instances("pool", attributes, 0));
+		header.setClassIndex(3);
+		return header;
+	}
+
+	//Numeric values are class dependent so models disagree; some values repeat a degenerate mean exactly
+	private static Instance instance(Instances header, Random random, int classValue, boolean withMissing){
+		Instance inst = new DenseInstance(4);
+		inst.setDataset(header);
+		inst.setValue(0, classValue + random.nextGaussian());
+		inst.setValue(1, random.nextBoolean() ? classValue : random.nextGaussian() * 2);
+		inst.setValue(2, (classValue + random.nextInt(2)) % 3);
+		inst.setValue(3, classValue);
+		if(withMissing && random.nextInt(4) == 0) inst.setMissing(random.nextInt(3));
+		return inst;
+	}
+}
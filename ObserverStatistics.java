@@ -0,0 +1,46 @@
+/*
+ * ObserverStatistics.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.core.attributeclassobservers;
+
+import moa.core.DoubleVector;
+import moa.core.GaussianEstimator;
+
+//Read access to the per-class statistics of the observers NaiveBayes uses, for code laying them out elsewhere
+public class ObserverStatistics {
+
+	//Estimator for a class, or null if the class has not been observed
+	public static GaussianEstimator getEstimator(GaussianNumericAttributeClassObserver obs, int classVal){
+		return obs.attValDistPerClass.get(classVal);
+	}
+
+	//Smallest and largest values seen for a class
+	public static double getMin(GaussianNumericAttributeClassObserver obs, int classVal){
+		return obs.minValueObservedPerClass.getValue(classVal);
+	}
+
+	public static double getMax(GaussianNumericAttributeClassObserver obs, int classVal){
+		return obs.maxValueObservedPerClass.getValue(classVal);
+	}
+
+	//Value counts for a class, or null if the class has not been observed
+	public static DoubleVector getCounts(NominalAttributeClassObserver obs, int classVal){
+		return obs.attValDistPerClass.get(classVal);
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * ScoringServer.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+import moa.classifiers.Classifier;
+import moa.core.InstanceExample;
+
+/*
+ * Embedded HTTP scoring server for a live GCPF or GAD learner, bound to localhost.
+ *
+ *   POST /score     body: comma separated attribute values (class omitted)  -> comma separated votes
+ *   POST /feedback  body: comma separated attribute values with the class   -> 204, queued for training
+ *
+ * Bodies may instead be sparse, as {index value,index value,...} with attribute indices from the header,
+ * which are parsed straight into a SparseInstance.
+ *
+ * Each request is handled on a virtual thread. Requests are queued and a single batching thread,
+ * which alone touches the learner, blocks until one arrives, then drains up to maxBatchSize score
+ * requests or waits at most maxDelayMillis after the first, then scores the batch and applies any
+ * feedback received meanwhile. With a delay of 0 only requests already queued join a batch.
+ *
+ * A failure in the learner answers 500; a request the server could not finish because it was
+ * stopped or interrupted answers 503. Feedback the learner fails to train on has already been
+ * answered, so it is counted and skipped and the batching thread carries on.
+ */
+public class ScoringServer {
+
+	private final Classifier learner;
+	private final InstancesHeader header;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+
+	//score and feedback requests share one queue so the batcher can block on a single take()
+	private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+	private HttpServer server;
+	private ExecutorService handlers;
+	private Thread batcher;
+	private volatile boolean running = false;
+
+	//counters for measuring server behaviour, written only by the batching thread
+	private volatile long batches = 0;
+	private volatile long instancesScored = 0;
+	private volatile long instancesTrained = 0;
+	private volatile long feedbackFailures = 0;
+
+	private static class Pending {
+		final Instance inst;
+		final boolean feedback; //labelled instance to train on, nothing is returned
+		final CompletableFuture<double[]> votes = new CompletableFuture<double[]>();
+		Pending(Instance inst, boolean feedback){
+			this.inst = inst;
+			this.feedback = feedback;
+		}
+	}
+
+	public ScoringServer(Classifier learner, InstancesHeader header, int maxBatchSize, long maxDelayMillis){
+		this.learner = learner;
+		this.header = header;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+	}
+
+	//Starts on the given localhost port, or an ephemeral port if 0. Returns the bound port
+	public int start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		handlers = Executors.newVirtualThreadPerTaskExecutor();
+		server.setExecutor(handlers);
+		server.createContext("/score", this::handleScore);
+		server.createContext("/feedback", this::handleFeedback);
+		running = true;
+		batcher = Thread.ofPlatform().name("scoring-server-batcher").daemon(true).start(this::runBatches);
+		server.start();
+		return server.getAddress().getPort();
+	}
+
+	public void stop(){
+		running = false;
+		if(server != null) server.stop(0);
+		if(batcher != null) batcher.interrupt();
+		if(handlers != null) handlers.shutdownNow();
+		Pending p;
+		while((p = queue.poll()) != null)
+			p.votes.cancel(false);
+	}
+
+	//Queues an instance and blocks until its batch has been scored. Throws CancellationException
+	//if the server is stopped first and ExecutionException if the learner fails
+	public double[] score(Instance inst) throws InterruptedException, ExecutionException {
+		Pending p = new Pending(inst, false);
+		queue.put(p);
+		if(!running) p.votes.cancel(false);
+		return p.votes.get();
+	}
+
+	//Queues a labelled instance to be trained on between batches
+	public void feedback(Instance inst) throws InterruptedException {
+		queue.put(new Pending(inst, true));
+	}
+
+	private void runBatches(){
+		ArrayList<Pending> batch = new ArrayList<Pending>(maxBatchSize);
+		ArrayList<Instance> feedback = new ArrayList<Instance>();
+		while(running){
+			try {
+				Pending next = queue.take();
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while(next != null){
+					if(next.feedback) feedback.add(next.inst);
+					else batch.add(next);
+					//feedback alone does not wait for score requests to join it
+					if(batch.isEmpty() || batch.size() >= maxBatchSize) break;
+					long remaining = deadline - System.nanoTime();
+					next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+				}
+				if(!batch.isEmpty()) scoreBatch(batch);
+				batch.clear();
+				trainFeedback(feedback);
+				feedback.clear();
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	private void scoreBatch(ArrayList<Pending> batch){
+		for(Pending p : batch){
+			try {
+				//the Example overload is used so GAD applies its decision boundary
+				p.votes.complete(learner.getVotesForInstance(new InstanceExample(p.inst)));
+			} catch (RuntimeException e) {
+				p.votes.completeExceptionally(e);
+			}
+		}
+		instancesScored += batch.size();
+		batches++;
+	}
+
+	private void trainFeedback(ArrayList<Instance> feedback){
+		for(Instance inst : feedback){
+			try {
+				learner.trainOnInstance(inst);
+				instancesTrained++;
+			} catch (RuntimeException e) {
+				feedbackFailures++;
+			}
+		}
+	}
+
+	private void handleScore(HttpExchange exchange) throws IOException {
+		if(!"POST".equals(exchange.getRequestMethod())){
+			respond(exchange, 405, "");
+			return;
+		}
+		try {
+			double[] votes = score(parseInstance(readBody(exchange), false));
+			StringBuilder out = new StringBuilder();
+			for(int i = 0; i < votes.length; i++){
+				if(i > 0) out.append(',');
+				out.append(votes[i]);
+			}
+			respond(exchange, 200, out.toString());
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			respond(exchange, 400, "Could not parse instance: " + e.getMessage());
+		} catch (ExecutionException e) {
+			respond(exchange, 500, "Scoring failed: " + e.getCause());
+		} catch (InterruptedException | CancellationException e) {
+			respond(exchange, 503, "Scoring server unavailable");
+		}
+	}
+
+	private void handleFeedback(HttpExchange exchange) throws IOException {
+		if(!"POST".equals(exchange.getRequestMethod())){
+			respond(exchange, 405, "");
+			return;
+		}
+		try {
+			feedback(parseInstance(readBody(exchange), true));
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			respond(exchange, 400, "Could not parse instance: " + e.getMessage());
+		} catch (InterruptedException e) {
+			respond(exchange, 503, "Feedback not queued");
+		}
+	}
+
+	//Parses comma separated attribute values in header order. Nominal values may be given by label
+	Instance parseInstance(String body, boolean withClass){
+		if(body.trim().startsWith("{")) return parseSparseInstance(body.trim(), withClass);
+		String[] values = body.trim().split(",");
+		int expected = withClass ? header.numAttributes() : header.numAttributes() - 1;
+		if(values.length != expected)
+			throw new IndexOutOfBoundsException("expected " + expected + " values but got " + values.length);
+		Instance inst = new DenseInstance(header.numAttributes());
+		inst.setDataset(header);
+		int v = 0;
+		for(int i = 0; i < header.numAttributes(); i++){
+			if(i == header.classIndex() && !withClass) continue;
+			String value = values[v++].trim();
+			if(header.attribute(i).isNominal() && header.attribute(i).indexOfValue(value) >= 0)
+				inst.setValue(i, header.attribute(i).indexOfValue(value));
+			else
+				inst.setValue(i, Double.parseDouble(value));
+		}
+		return inst;
+	}
+
+	//Parses {index value,...}; indices must be ascending and values numeric or nominal labels
+	Instance parseSparseInstance(String body, boolean withClass){
+		String inner = body.substring(1, body.endsWith("}") ? body.length() - 1 : body.length()).trim();
+		String[] pairs = inner.isEmpty() ? new String[0] : inner.split(",");
+		int[] indices = new int[pairs.length];
+		double[] values = new double[pairs.length];
+		boolean hasClass = false;
+		for(int i = 0; i < pairs.length; i++){
+			String[] pair = pairs[i].trim().split("\\s+");
+			if(pair.length != 2) throw new NumberFormatException("expected 'index value' but got '" + pairs[i].trim() + "'");
+			indices[i] = Integer.parseInt(pair[0]);
+			if(indices[i] < 0 || indices[i] >= header.numAttributes() || (i > 0 && indices[i] <= indices[i - 1]))
+				throw new IndexOutOfBoundsException("attribute index " + indices[i] + " out of range or order");
+			if(header.attribute(indices[i]).isNominal() && header.attribute(indices[i]).indexOfValue(pair[1]) >= 0)
+				values[i] = header.attribute(indices[i]).indexOfValue(pair[1]);
+			else
+				values[i] = Double.parseDouble(pair[1]);
+			if(indices[i] == header.classIndex()) hasClass = true;
+		}
+		if(withClass && !hasClass)
+			throw new IndexOutOfBoundsException("class attribute " + header.classIndex() + " missing");
+		Instance inst = new SparseInstance(1.0, values, indices, header.numAttributes());
+		inst.setDataset(header);
+		return inst;
+	}
+
+	private static String readBody(HttpExchange exchange) throws IOException {
+		try(InputStream in = exchange.getRequestBody()){
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		if(bytes.length > 0){
+			try(OutputStream out = exchange.getResponseBody()){
+				out.write(bytes);
+			}
+		}
+		exchange.close();
+	}
+
+	public long getBatches(){
+		return batches;
+	}
+
+	public long getInstancesScored(){
+		return instancesScored;
+	}
+
+	public long getInstancesTrained(){
+		return instancesTrained;
+	}
+
+	public long getFeedbackFailures(){
+		return feedbackFailures;
+	}
+
+	public double getMeanBatchSize(){
+		return batches == 0 ? 0 : (double) instancesScored / batches;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * ScoringServerTest.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import moa.classifiers.AbstractClassifier;
+import moa.core.FastVector;
+import moa.core.Measurement;
+
+//Drives a ScoringServer over localhost HTTP: batching of concurrent score requests, feedback
+//reaching the learner, and feedback the learner fails on
+public class ScoringServerTest {
+
+	static final long TIMEOUT_MILLIS = 10000;
+
+	//Votes report how many instances it has trained on; training on a negative x fails
+	static class CountingLearner extends AbstractClassifier {
+
+		private static final long serialVersionUID = 1L;
+
+		int trained = 0;
+
+		@Override
+		public double[] getVotesForInstance(Instance inst){
+			return new double[]{1.0, trained};
+		}
+
+		@Override
+		public void resetLearningImpl(){
+			trained = 0;
+		}
+
+		@Override
+		public void trainOnInstanceImpl(Instance inst){
+			if(inst.value(0) < 0) throw new IllegalStateException("cannot train on " + inst.value(0));
+			trained++;
+		}
+
+		@Override
+		protected Measurement[] getModelMeasurementsImpl(){
+			return null;
+		}
+
+		@Override
+		public void getModelDescription(StringBuilder out, int indent){}
+
+		@Override
+		public boolean isRandomizable(){
+			return false;
+		}
+	}
+
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(TIMEOUT_MILLIS)).build();
+	private ScoringServer server;
+	private int port;
+
+	@After
+	public void stopServer(){
+		if(server != null) server.stop();
+	}
+
+	@Test
+	public void concurrentScoresAreBatched() throws Exception {
+		start(8, 500);
+		ArrayList<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+		for(int i = 0; i < 8; i++) responses.add(client.sendAsync(post("/score", "1.5"), HttpResponse.BodyHandlers.ofString()));
+		for(CompletableFuture<HttpResponse<String>> r : responses){
+			HttpResponse<String> response = r.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			assertEquals(200, response.statusCode());
+			assertEquals("1.0,0.0", response.body());
+		}
+		assertEquals(8, server.getInstancesScored());
+		assertTrue("expected batches of more than one request, got " + server.getBatches() + " batches",
+				server.getBatches() < 8);
+	}
+
+	@Test
+	public void feedbackIsTrainedBeforeLaterScores() throws Exception {
+		start(4, 0);
+		for(int i = 0; i < 3; i++) assertEquals(204, send("/feedback", "1.5,1").statusCode());
+		awaitTrained(3, 0);
+		assertArrayEquals(new double[]{1.0, 3.0}, votes(send("/score", "1.5")), 0.0);
+	}
+
+	@Test
+	public void failedFeedbackIsCountedAndServerKeepsScoring() throws Exception {
+		start(4, 0);
+		assertEquals(204, send("/feedback", "-1,1").statusCode());
+		assertEquals(204, send("/feedback", "1.5,0").statusCode());
+		awaitTrained(1, 1);
+
+		//the batching thread survived the failure, so scoring and feedback still work
+		assertArrayEquals(new double[]{1.0, 1.0}, votes(send("/score", "1.5")), 0.0);
+		assertEquals(204, send("/feedback", "2.5,1").statusCode());
+		awaitTrained(2, 1);
+		assertArrayEquals(new double[]{1.0, 2.0}, votes(send("/score", "1.5")), 0.0);
+	}
+
+	@Test
+	public void malformedRequestsAreRejected() throws Exception {
+		start(4, 0);
+		assertEquals(400, send("/score", "1.5,2.5,3.5").statusCode());
+		assertEquals(400, send("/feedback", "x,1").statusCode());
+		assertEquals(405, client.send(HttpRequest.newBuilder(uri("/score")).GET().build(),
+				HttpResponse.BodyHandlers.ofString()).statusCode());
+	}
+
+	private void start(int maxBatchSize, long maxDelayMillis) throws Exception {
+		server = new ScoringServer(new CountingLearner(), header(), maxBatchSize, maxDelayMillis);
+		port = server.start(0);
+	}
+
+	//Feedback is answered before it is trained on, so wait for the batching thread to reach the counts
+	private void awaitTrained(long trained, long failures) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while(server.getInstancesTrained() < trained || server.getFeedbackFailures() < failures){
+			assertTrue("feedback not trained in time", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+		assertEquals(trained, server.getInstancesTrained());
+		assertEquals(failures, server.getFeedbackFailures());
+	}
+
+	private HttpResponse<String> send(String path, String body) throws Exception {
+		return client.sendAsync(post(path, body), HttpResponse.BodyHandlers.ofString()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	private HttpRequest post(String path, String body){
+		return HttpRequest.newBuilder(uri(path)).timeout(Duration.ofMillis(TIMEOUT_MILLIS))
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+	}
+
+	private URI uri(String path){
+		return URI.create("http://127.0.0.1:" + port + path);
+	}
+
+	private static double[] votes(HttpResponse<String> response){
+		assertEquals(200, response.statusCode());
+		return Arrays.stream(response.body().split(",")).mapToDouble(Double::parseDouble).toArray();
+	}
+
+	private static InstancesHeader header(){
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x"));
+		attributes.addElement(new Attribute("class", Arrays.asList("0", "1")));
+		InstancesHeader header = new InstancesHeader(new Instances("scoringServer", attributes, 0));
+		header.setClassIndex(1);
+		return header;
+	}
+}
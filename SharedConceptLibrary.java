@@ -0,0 +1,238 @@
+/*
+ * SharedConceptLibrary.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import moa.classifiers.Classifier;
+
+/*
+ * Library of serialized concept models in a memory-mapped file, shared by every GCPF process
+ * on a host that opens the same path.
+ *
+ * Layout: header {magic, format, writeOffset, globalVersion, generation, capacity} followed by records
+ * {modelLength, version, publisher, accuracy[4], conceptLength, concept, serialized model}. A concept
+ * names a model's lineage as its origin publisher and slot, and is kept when another process reuses
+ * and republishes the model, so a later record for a concept is a newer version of the same concept.
+ * The process that creates the file fixes its capacity in the header, and every other process maps
+ * that size whatever capacity it asked for, so all of them agree on where the file ends.
+ *
+ * Publishers take an exclusive file lock and write the record before advancing writeOffset; readers
+ * take a shared lock and only read up to writeOffset, so a partially written record is never seen.
+ * When a record does not fit, the publisher compacts the file in place to the latest version of each
+ * concept and bumps generation, so readers rescan from the start and skip versions already read.
+ * If the latest versions alone fill the file, publish throws LibraryFullException.
+ */
+public class SharedConceptLibrary implements Closeable {
+
+	static final int MAGIC = 0x43504C42;
+	static final int FORMAT = 3;
+	static final int HEADER_SIZE = 40;
+	static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 16 + 2;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer map;
+	private final long capacity;
+	private long readOffset = HEADER_SIZE;
+	private long readGeneration = 0;
+	private long lastVersionRead = 0;
+
+	public static class Entry {
+		public final long version;
+		public final long publisher;
+		public final String concept;
+		public final Integer[] accuracy;
+		public final Classifier model;
+
+		Entry(long version, long publisher, String concept, Integer[] accuracy, Classifier model){
+			this.version = version;
+			this.publisher = publisher;
+			this.concept = concept;
+			this.accuracy = accuracy;
+			this.model = model;
+		}
+	}
+
+	//Thrown when the latest version of every concept already fills the library
+	public static class LibraryFullException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		LibraryFullException(String message){
+			super(message);
+		}
+	}
+
+	public SharedConceptLibrary(File file, long capacity) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try(FileLock lock = channel.lock()){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while(header.hasRemaining() && channel.read(header, header.position()) >= 0);
+			if(header.position() == 0 || header.getInt(0) == 0){
+				//new file, or one whose creator failed before writing the header
+				this.capacity = Math.max(capacity, HEADER_SIZE);
+				this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+				map.putInt(4, FORMAT);
+				map.putLong(8, HEADER_SIZE);
+				map.putLong(16, 0);
+				map.putLong(24, 0);
+				map.putLong(32, this.capacity);
+				map.putInt(0, MAGIC);
+			} else if(header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT
+					|| header.getLong(32) < HEADER_SIZE || header.getLong(32) > Integer.MAX_VALUE || header.getLong(8) > header.getLong(32)){
+				throw new IOException(file + " is not a concept library of format " + FORMAT);
+			} else {
+				this.capacity = header.getLong(32);
+				this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+			}
+		} catch (IOException | RuntimeException e) {
+			if(channel.isOpen()) channel.close();
+			throw e;
+		}
+	}
+
+	//Capacity of the file in bytes, as fixed by the process that created it
+	public long getCapacity(){
+		return capacity;
+	}
+
+	//Appends a new version of a concept and returns its version
+	public synchronized long publish(long publisher, String concept, Integer[] accuracy, Classifier model) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+			out.writeObject(model);
+		}
+		byte[] payload = bytes.toByteArray();
+		byte[] name = concept.getBytes(StandardCharsets.UTF_8);
+		long recordSize = RECORD_HEADER_SIZE + name.length + payload.length;
+
+		try(FileLock lock = channel.lock()){
+			if(map.getLong(8) + recordSize > capacity) compact();
+			long offset = map.getLong(8);
+			if(offset + recordSize > capacity)
+				throw new LibraryFullException("Shared concept library is full with " + (offset - HEADER_SIZE)
+						+ " bytes of current concepts; a " + recordSize + " byte record does not fit");
+			long version = map.getLong(16) + 1;
+
+			int pos = (int) offset;
+			map.putInt(pos, payload.length);
+			map.putLong(pos + 4, version);
+			map.putLong(pos + 12, publisher);
+			for(int i = 0; i < 4; i++) map.putInt(pos + 20 + 4 * i, accuracy[i]);
+			map.putShort(pos + 36, (short) name.length);
+			map.put(pos + RECORD_HEADER_SIZE, name);
+			map.put(pos + RECORD_HEADER_SIZE + name.length, payload);
+
+			//advance the header last so readers never see a partial record
+			map.putLong(16, version);
+			map.putLong(8, offset + recordSize);
+			return version;
+		}
+	}
+
+	//Moves the latest record of each concept to the front of the file. Records are in version
+	//order, so a later record for a concept supersedes every earlier one. Caller holds the lock
+	private void compact(){
+		long end = map.getLong(8);
+		HashMap<String, Long> latest = new HashMap<String, Long>();
+		for(long offset = HEADER_SIZE; offset < end; offset += recordSize((int) offset))
+			latest.put(concept((int) offset), offset);
+
+		long write = HEADER_SIZE;
+		for(long offset = HEADER_SIZE; offset < end; ){
+			int size = recordSize((int) offset);
+			if(latest.get(concept((int) offset)) == offset){
+				//the record is read whole before it is written, so an overlapping move is safe
+				if(write != offset){
+					byte[] record = new byte[size];
+					map.get((int) offset, record);
+					map.put((int) write, record);
+				}
+				write += size;
+			}
+			offset += size;
+		}
+		map.putLong(8, write);
+		map.putLong(24, map.getLong(24) + 1);
+	}
+
+	private int recordSize(int pos){
+		return RECORD_HEADER_SIZE + map.getShort(pos + 36) + map.getInt(pos);
+	}
+
+	private String concept(int pos){
+		byte[] name = new byte[map.getShort(pos + 36)];
+		map.get(pos + RECORD_HEADER_SIZE, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	//Returns records published since the last call, skipping those from the given publisher
+	public synchronized ArrayList<Entry> readNew(long excludePublisher) throws IOException {
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		try(FileLock lock = channel.lock(0, HEADER_SIZE, true)){
+			if(map.getLong(24) != readGeneration){
+				//compacted since the last read, rescan and rely on versions to skip records already read
+				readGeneration = map.getLong(24);
+				readOffset = HEADER_SIZE;
+			}
+			long end = map.getLong(8);
+			while(readOffset < end){
+				int pos = (int) readOffset;
+				int length = map.getInt(pos);
+				long version = map.getLong(pos + 4);
+				long publisher = map.getLong(pos + 12);
+				if(publisher != excludePublisher && version > lastVersionRead){
+					Integer[] accuracy = new Integer[4];
+					for(int i = 0; i < 4; i++) accuracy[i] = map.getInt(pos + 20 + 4 * i);
+					String concept = concept(pos);
+					int modelStart = pos + RECORD_HEADER_SIZE + map.getShort(pos + 36);
+					byte[] payload = new byte[length];
+					map.get(modelStart, payload);
+					try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))){
+						entries.add(new Entry(version, publisher, concept, accuracy, (Classifier) in.readObject()));
+					} catch (ClassNotFoundException e) {
+						throw new IOException("Could not read model at offset " + pos, e);
+					}
+				}
+				lastVersionRead = Math.max(lastVersionRead, version);
+				readOffset += recordSize(pos);
+			}
+		}
+		return entries;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
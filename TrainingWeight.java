@@ -0,0 +1,33 @@
+/*
+ * TrainingWeight.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers;
+
+//Access to the training weight AbstractClassifier counts, for code that builds a model's statistics other than
+//through trainOnInstance, so trainingHasStarted() and the model measurements still reflect the data it holds
+public class TrainingWeight {
+
+	public static double get(AbstractClassifier c){
+		return c.trainingWeightSeenByModel;
+	}
+
+	public static void add(AbstractClassifier c, double weight){
+		c.trainingWeightSeenByModel += weight;
+	}
+}
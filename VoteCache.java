@@ -0,0 +1,87 @@
+/*
+ * VoteCache.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.classifiers.meta;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+//Caches votes per model slot, keyed by instance sequence number. A slot's entries are
+//dropped when that model trains, so only untrained-on instances (the warning buffer plus
+//the instance under test) are ever held. An entry only matches the same Instance object with
+//the same content, so a stream that mutates and reuses one object is not served stale votes.
+class VoteCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private HashMap<Integer, HashMap<Integer, Entry>> slots = new HashMap<Integer, HashMap<Integer, Entry>>();
+	int hits = 0;
+	int misses = 0;
+
+	private static class Entry implements Serializable {
+		private static final long serialVersionUID = 1L;
+		Instance inst;
+		InstanceSnapshot content;
+		double[] votes;
+		Entry(Instance inst, double[] votes){
+			this.inst = inst;
+			this.content = new InstanceSnapshot(inst);
+			this.votes = votes;
+		}
+	}
+
+	//Returns cached votes, or null if none are held for this exact instance
+	double[] get(int slot, int seq, Instance inst){
+		HashMap<Integer, Entry> entries = slots.get(slot);
+		Entry e = entries == null ? null : entries.get(seq);
+		if(e == null || e.inst != inst || !e.content.matches(inst)){
+			misses++;
+			return null;
+		}
+		hits++;
+		return e.votes;
+	}
+
+	void put(int slot, int seq, Instance inst, double[] votes){
+		HashMap<Integer, Entry> entries = slots.get(slot);
+		if(entries == null){
+			entries = new HashMap<Integer, Entry>();
+			slots.put(slot, entries);
+		}
+		entries.put(seq, new Entry(inst, votes));
+	}
+
+	//Call whenever the model in a slot changes (trained or replaced)
+	void invalidate(int slot){
+		HashMap<Integer, Entry> entries = slots.get(slot);
+		if(entries != null) entries.clear();
+	}
+
+	void clear(){
+		slots.clear();
+	}
+
+	int size(){
+		int size = 0;
+		for(HashMap<Integer, Entry> entries : slots.values()) size += entries.size();
+		return size;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * WindowScoreBuffer.java
+ * author: Robert William Anderson - The University of Auckland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ *
+ */
+
+package moa.evaluation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.commons.math3.util.FastMath;
+
+/*
+ * Sliding window of positive-class scores held in primitive arrays, used in place of
+ * RobWindowAUC when only the G-mean optimal decision boundary is needed. Adding a result
+ * allocates nothing; sorting is deferred to getBoundary(), which is only called at drift.
+ *
+ * To give the same boundary as RobWindowAUC, the window should be constructed with that
+ * evaluator's width, results with weight 0 are skipped as the evaluator skips them, and
+ * equal scores are walked oldest first as the score tree orders them by window position.
+ */
+public class WindowScoreBuffer implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_WIDTH = 1000;
+
+	private final double[] scores;
+	private final boolean[] positive;
+	private final long[] arrivals; //order results were added, breaks ties between equal scores
+	private long added = 0;
+	private int next = 0;
+	private int size = 0;
+	private int numPos = 0;
+
+	public WindowScoreBuffer(){
+		this(DEFAULT_WIDTH);
+	}
+
+	public WindowScoreBuffer(int width){
+		this.scores = new double[width];
+		this.positive = new boolean[width];
+		this.arrivals = new long[width];
+	}
+
+	//Adds the normalised class 1 score for an instance, evicting the oldest once full
+	public void addResult(double[] votes, boolean isPositive, double weight){
+		if(!(weight > 0.0)) return;
+		double score = 0;
+		if(votes.length > 1 && votes[0] + votes[1] > 0)
+			score = votes[1] / (votes[0] + votes[1]);
+		if(size == scores.length){
+			if(positive[next]) numPos--;
+		} else size++;
+		scores[next] = score;
+		positive[next] = isPositive;
+		arrivals[next] = added++;
+		if(isPositive) numPos++;
+		next = (next + 1) % scores.length;
+	}
+
+	public void reset(){
+		next = 0;
+		size = 0;
+		added = 0;
+		numPos = 0;
+	}
+
+	public int getPos(){
+		return numPos;
+	}
+
+	public int getNeg(){
+		return size - numPos;
+	}
+
+	//Walks scores from highest to lowest and returns the score with best G-mean,
+	//mirroring getNewBoundary() over RobWindowAUC's score tree
+	public double getBoundary(){
+		Integer[] order = new Integer[size];
+		for(int i = 0; i < size; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> scores[a] > scores[b] ? -1 : scores[a] < scores[b] ? 1
+				: Long.compare(arrivals[a], arrivals[b]));
+
+		double numPos = this.numPos;
+		double numNeg = size - this.numPos;
+		double optimalBoundary = 1.0;
+		double bestGMean = 0.0;
+		double posSeen = 0;
+		double negSeen = 0;
+		double lastScore = 1.0;
+
+		for(int i : order){
+			if(positive[i]) posSeen++;
+			else negSeen++;
+			if (scores[i] != lastScore) {
+				double thisGMean = FastMath.sqrt((posSeen/numPos) * (1-(negSeen/numNeg)));
+				if(thisGMean > bestGMean) {
+					bestGMean = thisGMean;
+					optimalBoundary = lastScore;
+				}
+				lastScore = scores[i];
+			}
+		}
+		return optimalBoundary;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * NaiveBayesPoolVectorKernel.java
+ * author: Robert William Anderson - The University of Auckland
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *             http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ * 
+ */
+
+package moa.classifiers.bayes;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * Vector API versions of NaiveBayesPoolScorer's lane loops, one lane per model. Only lanewise
+ * add, mul, div and neg are used, which are IEEE exact, so results equal the scalar loops bit for bit.
+ *
+ * This is the only source that needs the incubator module, so it is kept out of the main sources and
+ * compiled separately against them with --add-modules jdk.incubator.vector. NaiveBayesPoolScorer loads
+ * it by name when the module is present at runtime and uses NaiveBayesPoolKernel.SCALAR otherwise.
+ */
+final class NaiveBayesPoolVectorKernel implements NaiveBayesPoolKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public void gaussianArgs(double x, double[] mean, double[] denom, double[] out, int n){
+		int i = 0;
+		DoubleVector xs = DoubleVector.broadcast(SPECIES, x);
+		for(; i < SPECIES.loopBound(n); i += SPECIES.length()){
+			DoubleVector diff = xs.sub(DoubleVector.fromArray(SPECIES, mean, i));
+			diff.mul(diff).div(DoubleVector.fromArray(SPECIES, denom, i)).neg().intoArray(out, i);
+		}
+		for(; i < n; i++){
+			double diff = x - mean[i];
+			out[i] = -(diff * diff / denom[i]);
+		}
+	}
+
+	@Override
+	public void mul(double[] a, double[] b, double[] out, int n){
+		int i = 0;
+		for(; i < SPECIES.loopBound(n); i += SPECIES.length())
+			DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+		for(; i < n; i++) out[i] = a[i] * b[i];
+	}
+
+	@Override
+	public void nominal(double[] counts, double[] denom, double[] out, int n){
+		int i = 0;
+		for(; i < SPECIES.loopBound(n); i += SPECIES.length())
+			DoubleVector.fromArray(SPECIES, counts, i).add(1.0).div(DoubleVector.fromArray(SPECIES, denom, i)).intoArray(out, i);
+		for(; i < n; i++) out[i] = (counts[i] + 1.0) / denom[i];
+	}
+
+	@Override
+	public void scale(double[] votes, int offset, double[] factors, int n){
+		int i = 0;
+		for(; i < SPECIES.loopBound(n); i += SPECIES.length())
+			DoubleVector.fromArray(SPECIES, votes, offset + i).mul(DoubleVector.fromArray(SPECIES, factors, i)).intoArray(votes, offset + i);
+		for(; i < n; i++) votes[offset + i] *= factors[i];
+	}
+}